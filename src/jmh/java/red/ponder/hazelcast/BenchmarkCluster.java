@@ -0,0 +1,70 @@
+package red.ponder.hazelcast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.core.env.StandardEnvironment;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+
+import red.ponder.hazelcast.nacos.NacosDiscoveryProperties;
+
+/**
+ * 基准测试用的本机嵌入式集群, 使用TCP-IP发现, 不依赖Nacos
+ *
+ * @author ponder
+ */
+public final class BenchmarkCluster {
+
+    private static final int BASE_PORT = 5701;
+
+    private static final String LOCAL_MEMBER = "benchmark-0";
+
+    private final List<HazelcastInstance> peers = new ArrayList<>();
+
+    private final HazelConfig hazelConfig;
+
+    /**
+     * 启动members - 1个对等成员, HazelConfig在第一次访问时作为最后一个成员加入
+     */
+    public BenchmarkCluster(final int members, final boolean customSerializers) {
+        final NacosDiscoveryProperties properties = new NacosDiscoveryProperties(new StandardEnvironment());
+        properties.setApplicationName(LOCAL_MEMBER);
+        for (int i = 1; i < members; i++) {
+            peers.add(Hazelcast.newHazelcastInstance(memberConfig("benchmark-" + i, members, customSerializers)));
+        }
+        hazelConfig = new HazelConfig(properties, memberConfig(LOCAL_MEMBER, members, customSerializers));
+    }
+
+    private static Config memberConfig(final String name, final int members, final boolean customSerializers) {
+        final Config config = new Config();
+        config.setInstanceName(name);
+        config.setClusterName("hazelcast-nacos-benchmark");
+        config.getNetworkConfig().setPort(BASE_PORT).setPortAutoIncrement(true);
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true);
+        for (int i = 0; i < members; i++) {
+            config.getNetworkConfig().getJoin().getTcpIpConfig().addMember("127.0.0.1:" + (BASE_PORT + i));
+        }
+        if (customSerializers) {
+            HazelConfig.registerSerializers(config.getSerializationConfig());
+        }
+        return config;
+    }
+
+    public HazelConfig getHazelConfig() {
+        return hazelConfig;
+    }
+
+    /**
+     * 由各基准的@TearDown调用, 通过HazelConfig.destroy()停止本地成员并释放它的关闭钩子和后台线程
+     */
+    public void shutdown() {
+        hazelConfig.destroy();
+        for (HazelcastInstance peer : peers) {
+            peer.shutdown();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package red.ponder.hazelcast;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * 多线程并发调用HazelConfig.getHazelcastInstance(id), 所有id均已注册
+ *
+ * @author ponder
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class GetHazelcastInstanceBenchmark {
+
+    @Param({"1", "64"})
+    private int namespaces;
+
+    private BenchmarkCluster cluster;
+
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cluster = new BenchmarkCluster(1, true);
+        ids = new String[namespaces];
+        for (int i = 0; i < namespaces; i++) {
+            ids[i] = "red.ponder.mapper.Mapper" + i;
+            cluster.getHazelConfig().getHazelcastInstance(ids[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cluster.shutdown();
+    }
+
+    @Benchmark
+    public HazelcastInstance getHazelcastInstance() {
+        return cluster.getHazelConfig().getHazelcastInstance(ids[ThreadLocalRandom.current().nextInt(namespaces)]);
+    }
+}
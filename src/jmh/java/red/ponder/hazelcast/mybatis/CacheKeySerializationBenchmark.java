@@ -0,0 +1,73 @@
+package red.ponder.hazelcast.mybatis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.logging.ILogger;
+import com.hazelcast.logging.Logger;
+
+import red.ponder.hazelcast.HazelConfig;
+
+/**
+ * CacheKey序列化耗时和字节数: 自定义哈希序列化对比Java序列化
+ *
+ * @author ponder
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheKeySerializationBenchmark {
+
+    //jmh has no slf4j binding, hazelcast's logger falls back to java.util.logging and shows up in the run output
+    private static final ILogger log = Logger.getLogger(CacheKeySerializationBenchmark.class);
+
+    private CacheKey key;
+
+    private InternalSerializationService hashed;
+
+    private InternalSerializationService java;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        key = MybatisCacheBenchmark.cacheKey(42);
+        final SerializationConfig serializationConfig = new SerializationConfig();
+        HazelConfig.registerSerializers(serializationConfig);
+        hashed = new DefaultSerializationServiceBuilder().setConfig(serializationConfig).build();
+        java = new DefaultSerializationServiceBuilder().build();
+        log.info(String.format("serialized CacheKey bytes: hashed=%d, java=%d", hashedSerializer(), javaSerialization()));
+    }
+
+    @Benchmark
+    public int hashedSerializer() {
+        return hashed.toData(key).totalSize();
+    }
+
+    @Benchmark
+    public int javaSerialization() {
+        return java.toData(key).totalSize();
+    }
+
+    @Benchmark
+    public int plainObjectOutputStream() throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(key);
+        }
+        return buffer.size();
+    }
+}
@@ -0,0 +1,108 @@
+package red.ponder.hazelcast.mybatis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import red.ponder.hazelcast.BenchmarkCluster;
+
+/**
+ * 通过MyBatis缓存读写三成员嵌入式集群, 对比不同结果大小和key序列化方式
+ *
+ * @author ponder
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MybatisCacheBenchmark {
+
+    private static final String NAMESPACE = "red.ponder.mapper.UserMapper";
+
+    private static final int KEYS = 1024;
+
+    @Param({"1", "10", "100"})
+    private int rows;
+
+    @Param({"true", "false"})
+    private boolean customSerializers;
+
+    private BenchmarkCluster cluster;
+
+    private HazelcastMybatisCache cache;
+
+    private CacheKey[] keys;
+
+    private List<Map<String, Object>> value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cluster = new BenchmarkCluster(3, customSerializers);
+        cache = new HazelcastMybatisCache(NAMESPACE, cluster.getHazelConfig().getCache(NAMESPACE));
+        value = resultList(rows);
+        keys = new CacheKey[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = cacheKey(i);
+            cache.putObject(keys[i], value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cluster.shutdown();
+    }
+
+    @Benchmark
+    public Object get() {
+        return cache.getObject(keys[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+    @Benchmark
+    public void put() {
+        cache.putObject(keys[ThreadLocalRandom.current().nextInt(KEYS)], value);
+    }
+
+    @Benchmark
+    public void clear() {
+        cache.clear();
+    }
+
+    static CacheKey cacheKey(final int id) {
+        final CacheKey key = new CacheKey();
+        key.update(NAMESPACE + ".selectById");
+        key.update(0);
+        key.update(Integer.MAX_VALUE);
+        key.update("select id, name, email, created_at, updated_at from t_user where id = ?");
+        key.update(id);
+        key.update("production");
+        return key;
+    }
+
+    static List<Map<String, Object>> resultList(final int rows) {
+        final List<Map<String, Object>> result = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            final Map<String, Object> row = new HashMap<>(8);
+            row.put("id", (long) i);
+            row.put("name", "user-" + i);
+            row.put("email", "user-" + i + "@ponder.red");
+            row.put("created_at", System.currentTimeMillis());
+            row.put("updated_at", System.currentTimeMillis());
+            result.add(row);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+package red.ponder.hazelcast.nacos;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.EventListener;
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.hazelcast.logging.Logger;
+import com.hazelcast.spi.discovery.DiscoveryNode;
+
+/**
+ * discoverNodes()的开销, NamingService为进程内的假实现, 只衡量策略自身
+ *
+ * @author ponder
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DiscoverNodesBenchmark {
+
+    @Param({"3", "50", "200"})
+    private int members;
+
+    @Param({"DIRECT", "SUBSCRIBE"})
+    private DiscoveryMode mode;
+
+    private NacosDiscoveryStrategy strategy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final NacosDiscoveryProperties properties = new NacosDiscoveryProperties(new StandardEnvironment());
+        properties.setApplicationName("benchmark-hazelcast-instance");
+        properties.setDiscoveryMode(mode);
+
+        final List<Instance> instances = new ArrayList<>(members);
+        for (int i = 0; i < members; i++) {
+            final Instance instance = new Instance();
+            instance.setIp("10.0." + (i / 250) + "." + (i % 250 + 1));
+            instance.setPort(5701);
+            instances.add(instance);
+        }
+        strategy = new NacosDiscoveryStrategy(null, Logger.getLogger(DiscoverNodesBenchmark.class), Collections.emptyMap(),
+            properties, fakeNamingService(instances));
+        strategy.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        strategy.destroy();
+    }
+
+    @Benchmark
+    public void discoverNodes(final Blackhole blackhole) {
+        for (DiscoveryNode node : strategy.discoverNodes()) {
+            blackhole.consume(node);
+        }
+    }
+
+    /**
+     * 只实现发现相关的方法, 订阅时立即推送一次完整列表
+     */
+    static NamingService fakeNamingService(final List<Instance> instances) {
+        return (NamingService) Proxy.newProxyInstance(NamingService.class.getClassLoader(), new Class<?>[]{NamingService.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getAllInstances":
+                    case "selectInstances":
+                        return new ArrayList<>(instances);
+                    case "subscribe":
+                        ((EventListener) args[args.length - 1]).onEvent(new NamingEvent((String) args[0], instances));
+                        return null;
+                    case "getServerStatus":
+                        return "UP";
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                }
+            });
+    }
+}
@@ -0,0 +1,165 @@
+package red.ponder.hazelcast;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.MaxSizePolicy;
+
+/**
+ * 从Nacos配置中心下发的缓存调优参数, 不可变, 每次下发生成一个新版本
+ * 格式为properties, key为{@code <map名>.<参数>}, map名为default时作用于所有未单独配置的map:
+ * <pre>
+ * default.ttl=300
+ * com.example.UserMapper.size=20000
+ * com.example.UserMapper.eviction=LFU
+ * </pre>
+ * 支持的参数: ttl(秒) size eviction max.size.policy near.cache.size backup.count
+ * eviction除了Hazelcast自带的策略, 还可以是GDSF, 按加载成本淘汰
+ *
+ * @author ponder
+ */
+public final class CacheTuning {
+
+    static final CacheTuning EMPTY = new CacheTuning(0, Collections.emptyMap());
+
+    static final String DEFAULT_MAP = "default";
+
+    static final String TTL = "ttl";
+
+    static final String SIZE = "size";
+
+    static final String EVICTION = "eviction";
+
+    static final String MAX_SIZE_POLICY = "max.size.policy";
+
+    static final String NEAR_CACHE_SIZE = "near.cache.size";
+
+    static final String BACKUP_COUNT = "backup.count";
+
+    /**
+     * eviction取值, 使用{@link CostAwareEvictionComparator}
+     */
+    static final String GDSF = "GDSF";
+
+    /**
+     * 较长的后缀排在前面, near.cache.size不会被当成size
+     */
+    private static final String[] SETTINGS = {MAX_SIZE_POLICY, NEAR_CACHE_SIZE, BACKUP_COUNT, EVICTION, SIZE, TTL};
+
+    private final long version;
+
+    private final Map<String, Map<String, String>> byMap;
+
+    private CacheTuning(final long version, final Map<String, Map<String, String>> byMap) {
+        this.version = version;
+        this.byMap = byMap;
+    }
+
+    /**
+     * 解析并校验全部取值, 任何一项非法时整体拒绝
+     */
+    static CacheTuning parse(final long version, final String text) throws IOException {
+        final Properties properties = new Properties();
+        if (text != null) {
+            properties.load(new StringReader(text));
+        }
+        final Map<String, Map<String, String>> byMap = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            final String setting = settingOf(name);
+            if (setting == null) {
+                throw new IllegalArgumentException("Unknown cache tuning key: " + name);
+            }
+            final String value = properties.getProperty(name).trim();
+            validate(name, setting, value);
+            final String map = name.substring(0, name.length() - setting.length() - 1);
+            byMap.computeIfAbsent(map, key -> new TreeMap<>()).put(setting, value);
+        }
+        return new CacheTuning(version, Collections.unmodifiableMap(byMap));
+    }
+
+    private static String settingOf(final String name) {
+        for (String setting : SETTINGS) {
+            if (name.endsWith("." + setting) && name.length() > setting.length() + 1) {
+                return setting;
+            }
+        }
+        return null;
+    }
+
+    private static void validate(final String name, final String setting, final String value) {
+        try {
+            if (EVICTION.equals(setting)) {
+                if (!GDSF.equals(value)) {
+                    EvictionPolicy.valueOf(value);
+                }
+            } else if (MAX_SIZE_POLICY.equals(setting)) {
+                MaxSizePolicy.valueOf(value);
+            } else if (Integer.parseInt(value) < 0) {
+                throw new IllegalArgumentException("Negative value for " + name);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cache tuning " + name + "=" + value, e);
+        }
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * 取map自己的配置, 没有时取default, 都没有时返回null
+     */
+    String get(final String map, final String setting) {
+        final Map<String, String> own = byMap.get(map);
+        if (own != null && own.containsKey(setting)) {
+            return own.get(setting);
+        }
+        final Map<String, String> defaults = byMap.get(DEFAULT_MAP);
+        return defaults == null ? null : defaults.get(setting);
+    }
+
+    Integer getInt(final String map, final String setting, final Integer fallback) {
+        final String value = get(map, setting);
+        return value == null ? fallback : Integer.valueOf(value);
+    }
+
+    <E extends Enum<E>> E getEnum(final String map, final String setting, final Class<E> type, final E fallback) {
+        final String value = get(map, setting);
+        return value == null ? fallback : Enum.valueOf(type, value);
+    }
+
+    /**
+     * 与上一个版本相比发生变化的配置项, 值为[旧值, 新值]
+     */
+    Map<String, String[]> diff(final CacheTuning previous) {
+        final Map<String, String[]> changes = new TreeMap<>();
+        final Map<String, String> before = previous.flatten();
+        final Map<String, String> after = flatten();
+        for (Map.Entry<String, String> entry : after.entrySet()) {
+            final String old = before.remove(entry.getKey());
+            if (!entry.getValue().equals(old)) {
+                changes.put(entry.getKey(), new String[]{old, entry.getValue()});
+            }
+        }
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            changes.put(entry.getKey(), new String[]{entry.getValue(), null});
+        }
+        return changes;
+    }
+
+    private Map<String, String> flatten() {
+        final Map<String, String> flat = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> map : byMap.entrySet()) {
+            for (Map.Entry<String, String> setting : map.getValue().entrySet()) {
+                flat.put(map.getKey() + "." + setting.getKey(), setting.getValue());
+            }
+        }
+        return flat;
+    }
+}
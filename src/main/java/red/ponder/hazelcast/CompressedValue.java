@@ -0,0 +1,34 @@
+package red.ponder.hazelcast;
+
+import java.io.Serializable;
+
+/**
+ * 压缩后的缓存值, 内容是原始值经Hazelcast序列化后再deflate的字节
+ * 集群中只保存和复制压缩后的字节, 读取时在本地解压
+ *
+ * @author ponder
+ */
+public final class CompressedValue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int length;
+
+    private final byte[] bytes;
+
+    /**
+     * @param length 压缩前的字节数, 解压时一次分配
+     */
+    public CompressedValue(final int length, final byte[] bytes) {
+        this.length = length;
+        this.bytes = bytes;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,34 @@
+package red.ponder.hazelcast;
+
+import java.io.IOException;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+
+/**
+ * CompressedValue序列化, 只写原始长度和压缩后的字节, 不解压
+ *
+ * @author ponder
+ */
+public final class CompressedValueSerializer implements StreamSerializer<CompressedValue> {
+
+    public static final int TYPE_ID = 1004;
+
+    @Override
+    public void write(final ObjectDataOutput out, final CompressedValue value) throws IOException {
+        out.writeInt(value.getLength());
+        out.writeByteArray(value.getBytes());
+    }
+
+    @Override
+    public CompressedValue read(final ObjectDataInput in) throws IOException {
+        final int length = in.readInt();
+        return new CompressedValue(length, in.readByteArray());
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+}
@@ -0,0 +1,35 @@
+package red.ponder.hazelcast;
+
+import java.util.concurrent.TimeUnit;
+
+import com.hazelcast.core.EntryView;
+import com.hazelcast.map.MapEvictionPolicyComparator;
+
+/**
+ * GreedyDual-Size-Frequency淘汰: 优先级 = 访问次数 * 加载成本 / 占用字节, 优先级低的先淘汰
+ * Hazelcast按分区抽样淘汰, 比较器无状态, 没有全局的膨胀值L, 改为按空闲时长指数衰减:
+ * 每空闲{@link #AGING_MILLIS}优先级减半, 曾经昂贵但不再访问的结果最终也会被淘汰
+ * 抽样时反序列化的只是CostAwareValue外层, 原始值保持字节形式, 客户端模式下成员也不需要业务类
+ *
+ * @author ponder
+ */
+public final class CostAwareEvictionComparator implements MapEvictionPolicyComparator<Object, Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    static final long AGING_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Override
+    public int compare(final EntryView<Object, Object> e1, final EntryView<Object, Object> e2) {
+        final long now = System.currentTimeMillis();
+        return Double.compare(priority(e1, now), priority(e2, now));
+    }
+
+    static double priority(final EntryView<Object, Object> entry, final long now) {
+        final double frequency = entry.getHits() + 1;
+        final double size = Math.max(1, entry.getCost());
+        final double score = frequency * CostAwareValue.loadMicrosOf(entry.getValue()) / size;
+        final long idle = Math.max(0, now - Math.max(entry.getLastAccessTime(), entry.getCreationTime()));
+        return score / Math.pow(2, (double) idle / AGING_MILLIS);
+    }
+}
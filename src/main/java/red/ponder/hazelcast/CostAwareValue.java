@@ -0,0 +1,56 @@
+package red.ponder.hazelcast;
+
+import java.io.Serializable;
+
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.internal.serialization.impl.HeapData;
+
+/**
+ * 带加载成本的缓存值, 供{@link CostAwareEvictionComparator}按GDSF打分
+ * 原始值保存为序列化后的字节, 成员淘汰抽样时读取加载成本不需要反序列化业务对象, 也不需要业务类
+ *
+ * @author ponder
+ */
+public final class CostAwareValue implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    /**
+     * 不知道加载成本的条目(其他方式写入的)按1ms计
+     */
+    static final long DEFAULT_LOAD_MICROS = 1000;
+
+    private final long loadMicros;
+
+    /**
+     * 原始值(或压缩后的值)的Hazelcast序列化字节
+     */
+    private final byte[] payload;
+
+    public CostAwareValue(final long loadMicros, final byte[] payload) {
+        this.loadMicros = loadMicros;
+        this.payload = payload;
+    }
+
+    public long getLoadMicros() {
+        return loadMicros;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * 去掉包装并反序列化原始值, 其他值原样返回
+     */
+    static Object unwrap(final SerializationService serializationService, final Object stored) {
+        if (stored instanceof CostAwareValue) {
+            return serializationService.toObject(new HeapData(((CostAwareValue) stored).payload));
+        }
+        return stored;
+    }
+
+    static long loadMicrosOf(final Object stored) {
+        return stored instanceof CostAwareValue ? Math.max(1, ((CostAwareValue) stored).loadMicros) : DEFAULT_LOAD_MICROS;
+    }
+}
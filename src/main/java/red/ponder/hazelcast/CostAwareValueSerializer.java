@@ -0,0 +1,34 @@
+package red.ponder.hazelcast;
+
+import java.io.IOException;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+
+/**
+ * CostAwareValue序列化, 加载成本定长写在前面, 原始值已经是序列化后的字节, 原样写出
+ *
+ * @author ponder
+ */
+public final class CostAwareValueSerializer implements StreamSerializer<CostAwareValue> {
+
+    public static final int TYPE_ID = 1003;
+
+    @Override
+    public void write(final ObjectDataOutput out, final CostAwareValue value) throws IOException {
+        out.writeLong(value.getLoadMicros());
+        out.writeByteArray(value.getPayload());
+    }
+
+    @Override
+    public CostAwareValue read(final ObjectDataInput in) throws IOException {
+        final long loadMicros = in.readLong();
+        return new CostAwareValue(loadMicros, in.readByteArray());
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+}
@@ -0,0 +1,86 @@
+package red.ponder.hazelcast;
+
+/**
+ * TinyLFU使用的Count-Min Sketch, 4行4位计数器, 每个long存16个计数器
+ * 累计次数达到容量10倍时所有计数减半, 让过去的热点逐渐冷却
+ * 计数不加锁, 并发时偶尔丢失一次自增, 对频率估计没有影响
+ *
+ * @author ponder
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    FrequencySketch(final int capacity) {
+        final int size = Math.max(64, Integer.highestOneBit(Math.max(1, capacity) - 1) << 1);
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        this.sampleSize = (int) Math.min(10L * Math.max(1, capacity), Integer.MAX_VALUE);
+    }
+
+    void increment(final Object key) {
+        final int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < 4; row++) {
+            added |= incrementAt(indexOf(hash, row), offsetOf(hash, row));
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(final Object key) {
+        final int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int row = 0; row < 4; row++) {
+            final int count = (int) ((table[indexOf(hash, row)] >>> (offsetOf(hash, row) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    private boolean incrementAt(final int index, final int offset) {
+        final int shift = offset << 2;
+        final long mask = 0xfL << shift;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << shift;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = additions >>> 1;
+    }
+
+    private int indexOf(final int hash, final int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    /**
+     * 每行只使用long中属于自己的4个计数器
+     */
+    private static int offsetOf(final int hash, final int row) {
+        return (row << 2) + ((hash >>> (row << 3)) & 3);
+    }
+
+    private static int spread(final int hashCode) {
+        int h = hashCode * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,53 @@
+package red.ponder.hazelcast;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * 带命名空间版本号的key, 版本号变化后旧key自然失效, 由TTL和淘汰策略回收
+ *
+ * @author ponder
+ */
+public final class GenerationKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long generation;
+
+    private final Object key;
+
+    public GenerationKey(final long generation, final Object key) {
+        this.generation = generation;
+        this.key = key;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final GenerationKey that = (GenerationKey) o;
+        return generation == that.generation && Objects.equals(key, that.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(generation) + Objects.hashCode(key);
+    }
+
+    @Override
+    public String toString() {
+        return generation + ":" + key;
+    }
+}
@@ -0,0 +1,34 @@
+package red.ponder.hazelcast;
+
+import java.io.IOException;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+
+/**
+ * GenerationKey序列化, 版本号定长写入, 原始key交给其自身的序列化器
+ *
+ * @author ponder
+ */
+public final class GenerationKeySerializer implements StreamSerializer<GenerationKey> {
+
+    public static final int TYPE_ID = 1001;
+
+    @Override
+    public void write(final ObjectDataOutput out, final GenerationKey key) throws IOException {
+        out.writeLong(key.getGeneration());
+        out.writeObject(key.getKey());
+    }
+
+    @Override
+    public GenerationKey read(final ObjectDataInput in) throws IOException {
+        final long generation = in.readLong();
+        return new GenerationKey(generation, in.readObject());
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+}
@@ -0,0 +1,99 @@
+package red.ponder.hazelcast;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.HazelcastInstance;
+
+import red.ponder.hazelcast.nacos.MemberDeparture;
+import red.ponder.hazelcast.nacos.NacosDiscoveryProperties;
+
+/**
+ * 成员停机顺序: 从Nacos注销 -> 等待发现变化传播 -> 排空本地缓冲 -> 等待集群安全或超时 -> 离开集群
+ * 每个阶段单独计时, 任何阶段失败只记录日志并继续下一阶段, 停机不抛异常
+ * 客户端没有注册到Nacos也不持有分区, 只排空后离开
+ *
+ * @author ponder
+ */
+final class GracefulShutdown {
+    private static final Logger log = LoggerFactory.getLogger(GracefulShutdown.class);
+
+    private static final long SAFE_POLL_MILLIS = 100;
+
+    private final NacosDiscoveryProperties nacosDiscoveryProperties;
+
+    private final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+
+    private boolean deregistered;
+
+    GracefulShutdown(final NacosDiscoveryProperties nacosDiscoveryProperties) {
+        this.nacosDiscoveryProperties = nacosDiscoveryProperties;
+    }
+
+    /**
+     * @param instance 尚未启动时为null, 只执行排空
+     * @param drain    写出本地缓冲的内容, 此时实例仍在集群中
+     */
+    void run(final HazelcastInstance instance, final boolean member, final Runnable drain) {
+        final long startNanos = System.nanoTime();
+        final boolean running = instance != null && instance.getLifecycleService().isRunning();
+        if (member) {
+            phase("deregister", () -> deregistered = MemberDeparture.deregister(nacosDiscoveryProperties.getApplicationnameOrDefault()));
+        }
+        if (deregistered) {
+            phase("propagate", () -> sleep(nacosDiscoveryProperties.getShutdownPropagationMillisOrDefault()));
+        }
+        phase("drain", drain);
+        if (member && running) {
+            phase("safe", () -> awaitClusterSafe(instance));
+        }
+        if (running) {
+            phase("leave", instance::shutdown);
+        }
+        log.info("停机完成, 共{}ms, 各阶段耗时(ms): {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), phaseMillis);
+    }
+
+    private void phase(final String name, final Runnable action) {
+        final long startNanos = System.nanoTime();
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            log.warn("停机阶段{}失败, 继续下一阶段", name, e);
+        } finally {
+            phaseMillis.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+    }
+
+    /**
+     * 所有分区的备份都已同步时离开不会丢数据, 也不会在负载下临时提升备份
+     */
+    private void awaitClusterSafe(final HazelcastInstance instance) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(nacosDiscoveryProperties.getShutdownSafeTimeoutMillisOrDefault());
+        while (!instance.getPartitionService().isClusterSafe()) {
+            if (System.nanoTime() - deadline >= 0) {
+                log.warn("等待集群安全超时, 照常离开");
+                return;
+            }
+            if (!sleep(SAFE_POLL_MILLIS)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return 被中断时返回false, 并保留中断状态
+     */
+    private static boolean sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
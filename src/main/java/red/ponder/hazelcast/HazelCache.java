@@ -0,0 +1,409 @@
+package red.ponder.hazelcast;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.internal.serialization.SerializationServiceSupport;
+import com.hazelcast.map.IMap;
+import com.hazelcast.nearcache.NearCacheStats;
+
+import red.ponder.hazelcast.metrics.CacheMetrics;
+import red.ponder.hazelcast.nacos.NacosDiscoveryProperties;
+
+/**
+ * 单个缓存命名空间, 持有IMap句柄, 每个操作只产生一次远程调用
+ *
+ * @author ponder
+ */
+public final class HazelCache {
+
+    private static final int MAX_REMEMBERED_MISSES = 64;
+
+    private final String id;
+
+    private final HazelConfig hazelConfig;
+
+    private final NacosDiscoveryProperties nacosDiscoveryProperties;
+
+    private final SingleFlightLoader loader;
+
+    private final CacheMetrics metrics;
+
+    /**
+     * 未开启一级缓存时为null, 存放序列化后的value, 每次命中反序列化出新对象, 调用方之间不共享可变对象
+     */
+    private final LocalCache l1;
+
+    /**
+     * 未开启压缩时为null
+     */
+    private final ValueCompressor compressor;
+
+    /**
+     * 未开启热点统计时为null
+     */
+    private final HotKeyTracker hotKeys;
+
+    /**
+     * 已经交给合并写入但尚未写完的值, 保证本节点读己之写
+     */
+    private final ConcurrentMap<Object, WriteCoalescer.PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+
+    /**
+     * 按加载成本淘汰时, 记录本线程每个key未命中的时刻, MyBatis查库后在同一线程写回, 间隔即加载成本
+     * MyBatis二级缓存经TransactionalCache在事务提交时才写回, 间隔包含查询之后到提交之前的时间, 长事务会高估成本;
+     * 需要准确的成本时使用{@link #get(Object, Callable)}, 由loader计时
+     */
+    private final ThreadLocal<Map<Object, Long>> missNanos = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * 当前实例上的IMap句柄, 实例重启后重新获取
+     */
+    private volatile MapHandle map;
+
+    HazelCache(final String id, final HazelConfig hazelConfig, final NacosDiscoveryProperties nacosDiscoveryProperties) {
+        this.id = id;
+        this.hazelConfig = hazelConfig;
+        this.nacosDiscoveryProperties = nacosDiscoveryProperties;
+        this.loader = new SingleFlightLoader(this, nacosDiscoveryProperties);
+        this.metrics = new CacheMetrics(id, this::nearCacheStats);
+        this.l1 = nacosDiscoveryProperties.isL1EnabledOrDefault()
+            ? new LocalCache(nacosDiscoveryProperties.getL1SizeOrDefault(), nacosDiscoveryProperties.getL1TimeToLiveMillisOrDefault())
+            : null;
+        this.compressor = hazelConfig.getCompressor(id);
+        this.hotKeys = nacosDiscoveryProperties.isHotKeysEnabledOrDefault() ? new HotKeyTracker(id, nacosDiscoveryProperties) : null;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 首次使用时才启动Hazelcast实例, 实例重启后旧的代理不再可用, 重新获取
+     */
+    public IMap<Object, Object> getMap() {
+        final HazelcastInstance instance = hazelConfig.getHazelcastInstance(id);
+        MapHandle current = map;
+        if (current == null || current.instance != instance) {
+            final IMap<Object, Object> created = instance.getMap(id);
+            hazelConfig.registerWarmRestart(instance, created);
+            if (l1 != null) {
+                if (current != null) {
+                    //invalidations sent while the old instance was down never reached this node
+                    l1.clear();
+                }
+                //start listening for namespace invalidations before serving from L1
+                hazelConfig.getL1Invalidator();
+            }
+            current = new MapHandle(instance, created);
+            map = current;
+        }
+        return current.map;
+    }
+
+    HazelcastInstance getHazelcastInstance() {
+        return hazelConfig.getHazelcastInstance(id);
+    }
+
+    /**
+     * 开启版本号清空时, 实际存储的key带上命名空间当前版本号
+     */
+    Object storeKey(final Object key) {
+        if (!nacosDiscoveryProperties.isGenerationClearOrDefault()) {
+            return key;
+        }
+        return new GenerationKey(hazelConfig.getGenerations().current(id), key);
+    }
+
+    public Object get(final Object key) {
+        track(key);
+        long epoch = 0;
+        if (l1 != null) {
+            final Object local = l1.get(key);
+            if (local != null) {
+                metrics.recordL1Hit();
+                return serializationService().toObject(local);
+            }
+            epoch = l1.epoch();
+        }
+        final WriteCoalescer.PendingWrite pending = pendingWrites.get(key);
+        if (pending != null) {
+            return decode(serializationService().toObject(pending.getValue()));
+        }
+        final long startNanos = System.nanoTime();
+        final Object stored = getMap().get(storeKey(key));
+        metrics.recordGet(startNanos, stored != null);
+        if (stored instanceof CostAwareValue) {
+            metrics.recordSavedLoad(((CostAwareValue) stored).getLoadMicros());
+        } else if (stored == null && hazelConfig.isCostAware(id)) {
+            rememberMiss(key, startNanos);
+        }
+        final Object value = decode(stored);
+        if (l1 != null && value != null) {
+            l1.putIfEpoch(key, serializationService().toData(value), epoch);
+        }
+        return value;
+    }
+
+    /**
+     * 缓存未命中时由loader加载并写入缓存, 同一个key的并发未命中只会加载一次
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(final Object key, final Callable<? extends V> valueLoader) {
+        return (V) loader.load(key, valueLoader);
+    }
+
+    /**
+     * 抽中时才计算key所在的分区, 这一步需要序列化key
+     */
+    private void track(final Object key) {
+        if (hotKeys != null && hotKeys.sample()) {
+            hotKeys.record(key, getHazelcastInstance().getPartitionService().getPartition(storeKey(key)).getPartitionId());
+        }
+    }
+
+    /**
+     * 本节点最近一个统计窗口的热点key和各分区操作数, 一级缓存命中也计入, 未开启统计时返回null
+     */
+    public HotKeyReport getHotKeys() {
+        return hotKeys == null ? null : hotKeys.report();
+    }
+
+    /**
+     * 合并所有成员的报告, 客户端模式下再加上本客户端自己的报告, 未开启统计时返回null
+     */
+    public HotKeyReport getClusterHotKeys() {
+        if (hotKeys == null) {
+            return null;
+        }
+        final List<HotKeyReport> reports = HotKeyTask.collect(getHazelcastInstance(), id);
+        if (hazelConfig.isClientMode()) {
+            reports.add(hotKeys.report());
+        }
+        return HotKeyReport.merge(id, reports, hotKeys.getTopK());
+    }
+
+    /**
+     * 只保留最近的少量未命中, 未写回的key不会一直占用内存
+     */
+    private void rememberMiss(final Object key, final long nanos) {
+        final Map<Object, Long> misses = missNanos.get();
+        if (misses.size() >= MAX_REMEMBERED_MISSES) {
+            misses.clear();
+        }
+        misses.put(key, nanos);
+    }
+
+    /**
+     * value为null时直接删除, 不先containsKey
+     */
+    public void put(final Object key, final Object value) {
+        put(key, value, -1);
+    }
+
+    /**
+     * @param loadMicros 加载value的耗时, 未知时为负数, 按加载成本淘汰时取未命中到写回的间隔
+     */
+    void put(final Object key, final Object value, final long loadMicros) {
+        track(key);
+        if (value == null) {
+            cancelPending(key);
+            getMap().delete(storeKey(key));
+            if (l1 != null) {
+                l1.invalidate(key);
+            }
+            return;
+        }
+        final long startNanos = System.nanoTime();
+        final Object stored = encode(key, value, loadMicros, startNanos);
+        final long ttl = timeToLiveSeconds();
+        if (offerCoalesced(key, stored, ttl)) {
+            metrics.recordPut(startNanos);
+            if (l1 != null) {
+                l1.put(key, serializationService().toData(value));
+            }
+            return;
+        }
+        if (nacosDiscoveryProperties.isAsyncWriteOrDefault()) {
+            getMap().setAsync(storeKey(key), stored, ttl, TimeUnit.SECONDS);
+        } else {
+            getMap().set(storeKey(key), stored, ttl, TimeUnit.SECONDS);
+        }
+        metrics.recordPut(startNanos);
+        if (l1 != null) {
+            l1.put(key, serializationService().toData(value));
+        }
+    }
+
+    /**
+     * 写入IMap的形式: 开启压缩时先序列化并按阈值压缩, 按加载成本淘汰时再带上加载耗时
+     */
+    private Object encode(final Object key, final Object value, final long loadMicros, final long now) {
+        Object stored = compressor == null ? value : compressor.compress(serializationService(), value, metrics);
+        if (hazelConfig.isCostAware(id)) {
+            //kept serialized so members read the cost without the user's classes
+            stored = new CostAwareValue(loadMicros(key, loadMicros, now), serializationService().toData(stored).toByteArray());
+        }
+        return stored;
+    }
+
+    private Object decode(final Object stored) {
+        final Object unwrapped = CostAwareValue.unwrap(serializationService(), stored);
+        //compression is local configuration, other nodes may have written compressed values (e.g. during a rolling deploy)
+        return hazelConfig.getDecompressor().decompress(serializationService(), unwrapped);
+    }
+
+    private SerializationService serializationService() {
+        return ((SerializationServiceSupport) getHazelcastInstance()).getSerializationService();
+    }
+
+    /**
+     * 调用方没有给出加载耗时, 取本线程未命中到写回的间隔
+     */
+    private long loadMicros(final Object key, final long loadMicros, final long now) {
+        final Long missedAt = missNanos.get().remove(key);
+        final long micros;
+        if (loadMicros >= 0) {
+            micros = loadMicros;
+        } else if (missedAt != null) {
+            micros = TimeUnit.NANOSECONDS.toMicros(now - missedAt);
+        } else {
+            micros = CostAwareValue.DEFAULT_LOAD_MICROS;
+        }
+        metrics.recordLoad(micros);
+        return micros;
+    }
+
+    /**
+     * 交给合并写入, 未开启或队列已满时返回false, 由调用方同步写入
+     */
+    private boolean offerCoalesced(final Object key, final Object value, final long ttlSeconds) {
+        final WriteCoalescer coalescer = hazelConfig.getWriteCoalescer();
+        if (coalescer == null) {
+            return false;
+        }
+        //serialized now: later changes to the caller's object must neither leak into the write nor into local reads
+        final WriteCoalescer.PendingWrite write = new WriteCoalescer.PendingWrite(this, key, storeKey(key),
+            serializationService().toData(value), ttlSeconds);
+        final WriteCoalescer.PendingWrite previous = pendingWrites.put(key, write);
+        if (previous != null) {
+            previous.cancel();
+        }
+        if (coalescer.offer(write)) {
+            return true;
+        }
+        pendingWrites.remove(key, write);
+        return false;
+    }
+
+    private void cancelPending(final Object key) {
+        final WriteCoalescer.PendingWrite pending = pendingWrites.remove(key);
+        if (pending != null) {
+            pending.cancel();
+        }
+    }
+
+    /**
+     * 合并写入完成或被取代, 写入失败时同样移除, 之后的读取以集群为准
+     */
+    void writeCompleted(final WriteCoalescer.PendingWrite write, final Throwable error) {
+        pendingWrites.remove(write.getKey(), write);
+    }
+
+    /**
+     * 在配置的TTL(Nacos下发的调优参数优先)上随机增加一部分, 避免同时写入的条目同时过期
+     */
+    private long timeToLiveSeconds() {
+        final long ttl = hazelConfig.timeToLiveSeconds(id);
+        final int jitterPercent = nacosDiscoveryProperties.getTimeToLiveJitterPercentOrDefault();
+        if (jitterPercent <= 0 || ttl <= 0) {
+            return ttl;
+        }
+        return ttl + ThreadLocalRandom.current().nextLong(ttl * jitterPercent / 100 + 1);
+    }
+
+    public Object remove(final Object key) {
+        track(key);
+        cancelPending(key);
+        final Object removed = decode(getMap().remove(storeKey(key)));
+        if (l1 != null) {
+            l1.invalidate(key);
+        }
+        return removed;
+    }
+
+    /**
+     * 开启版本号清空时只递增版本号, 旧条目由TTL和淘汰策略回收, 否则清空整个IMap
+     */
+    public void clear() {
+        for (Object key : pendingWrites.keySet()) {
+            cancelPending(key);
+        }
+        if (nacosDiscoveryProperties.isGenerationClearOrDefault()) {
+            hazelConfig.getGenerations().next(id);
+        } else {
+            final WriteCoalescer coalescer = hazelConfig.getWriteCoalescer();
+            if (coalescer != null) {
+                //a batch already sent would land after the clear and bring old entries back
+                coalescer.awaitInFlight(this);
+            }
+            getMap().clear();
+        }
+        if (l1 != null) {
+            //after the IMap is cleared, so reads that started earlier cannot refill L1
+            l1.clear();
+            hazelConfig.getL1Invalidator().namespaceChanged(id);
+        }
+    }
+
+    /**
+     * 其他节点清空了这个命名空间
+     */
+    void invalidateLocal() {
+        if (l1 != null) {
+            l1.clear();
+        }
+    }
+
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 尚未获取IMap时不触发实例启动
+     */
+    private NearCacheStats nearCacheStats() {
+        final MapHandle current = map;
+        return current == null ? null : current.map.getLocalMapStats().getNearCacheStats();
+    }
+
+    /**
+     * 本节点持有的条目数, 不做集群范围的size()
+     * 客户端不持有数据, 只能返回集群范围的size()
+     */
+    public int getLocalSize() {
+        if (hazelConfig.isClientMode()) {
+            return getMap().size();
+        }
+        return (int) getMap().getLocalMapStats().getOwnedEntryCount();
+    }
+
+    private static final class MapHandle {
+        private final HazelcastInstance instance;
+
+        private final IMap<Object, Object> map;
+
+        private MapHandle(final HazelcastInstance instance, final IMap<Object, Object> map) {
+            this.instance = instance;
+            this.map = map;
+        }
+    }
+}
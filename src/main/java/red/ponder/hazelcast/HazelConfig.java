@@ -1,31 +1,222 @@
 package red.ponder.hazelcast;
 
 
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import com.alibaba.nacos.api.naming.NamingService;
 import com.alibaba.nacos.shaded.com.google.common.collect.ImmutableList;
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.client.properties.ClientProperty;
 import com.hazelcast.config.Config;
 import com.hazelcast.config.DiscoveryConfig;
 import com.hazelcast.config.DiscoveryStrategyConfig;
 import com.hazelcast.config.EvictionConfig;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.InvalidConfigurationException;
 import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MaxSizePolicy;
+import com.hazelcast.config.NearCacheConfig;
+import com.hazelcast.config.NearCachePreloaderConfig;
+import com.hazelcast.config.PartitionGroupConfig;
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.config.SerializerConfig;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceNotActiveException;
+import com.hazelcast.internal.nearcache.impl.invalidation.RepairingTask;
+import com.hazelcast.map.IMap;
 import com.hazelcast.spi.properties.ClusterProperty;
 
+import red.ponder.hazelcast.metrics.HazelcastMetrics;
+import red.ponder.hazelcast.nacos.MemberReadiness;
 import red.ponder.hazelcast.nacos.NacosDiscoveryProperties;
 import red.ponder.hazelcast.nacos.NacosDiscoveryStrategyFactory;
+import red.ponder.hazelcast.nacos.NamingServicePool;
 
 /**
  * @author ponder
  */
-public final class HazelConfig {
+@Component
+public final class HazelConfig implements SmartInitializingSingleton, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(HazelConfig.class);
+
+    /**
+     * 调优配置的变更记录
+     */
+    static final Logger AUDIT = LoggerFactory.getLogger("red.ponder.hazelcast.tuning.audit");
+
+    private static final String MYBATIS_CACHE_KEY = "org.apache.ibatis.cache.CacheKey";
+
+    private static final long WRITE_COALESCE_CLOSE_MILLIS = 5000;
+
+    private static final String ALL_MAPS = "*";
+
+    private static final String CACHE_KEY_SERIALIZER = "red.ponder.hazelcast.mybatis.CacheKeySerializer";
 
     private final Config config;
 
+    /**
+     * 客户端模式下的配置, 成员模式为null
+     */
+    private final ClientConfig clientConfig;
+
     private final NacosDiscoveryProperties nacosDiscoveryProperties;
 
+    /**
+     * 已注册的Map配置, 命中时不加锁
+     */
+    private final ConcurrentMap<String, MapConfig> mapConfigs = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, HazelCache> caches = new ConcurrentHashMap<>();
+
+    private final HazelcastMetrics metrics = new HazelcastMetrics();
+
+    private volatile HazelcastInstance hazelcastInstance;
+
+    private volatile NamespaceGenerations generations;
+
+    private volatile L1Invalidator l1Invalidator;
+
+    /**
+     * 未开启合并写入时为null
+     */
+    private final WriteCoalescer writeCoalescer;
+
+    /**
+     * 本地配置中按加载成本淘汰的Map名, 调优参数中的eviction优先
+     */
+    private final Set<String> costAwareMaps;
+
+    private final Set<String> compressionMaps;
+
+    /**
+     * 总是存在: 压缩只对compression.maps中的Map生效, 但读取时不论本地配置都要能解压其他节点写入的值
+     */
+    private final ValueCompressor compressor;
+
+    /**
+     * 未配置快照目录或客户端模式时为null
+     */
+    private final WarmRestart warmRestart;
+
+    /**
+     * Nacos配置中心下发的调优参数, 优先于本地配置
+     */
+    private volatile CacheTuning tuning = CacheTuning.EMPTY;
+
+    private TuningSubscriber tuningSubscriber;
+
+    /**
+     * 实例完成启动和入群时完成
+     */
+    private final CompletableFuture<HazelcastInstance> readiness = new CompletableFuture<>();
+
+    private volatile long startupMillis = -1;
+
+    /**
+     * Hazelcast自带的关闭钩子已禁用, JVM退出时没有经过Spring的destroy()(例如没有注册Spring关闭钩子), 由这个钩子按顺序停机
+     * 实例启动后才注册, 从未启动实例的HazelConfig不会被钩子一直引用到JVM退出
+     */
+    private final Thread shutdownHook = new Thread(this::destroy, "hazelcast-nacos-shutdown");
+
+    /**
+     * 在config锁内读写
+     */
+    private boolean hookRegistered;
+
+    private final AtomicBoolean destroyed = new AtomicBoolean();
+
+    /**
+     * destroy()和关闭钩子先到的一方完成停机后完成
+     */
+    private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+
+    /**
+     * 预热时持有的NamingService引用, 保证发现策略拿到的是已经连上的客户端
+     */
+    private volatile NamingService warmNamingService;
+
+    @Autowired
     public HazelConfig(NacosDiscoveryProperties discoveryProperties) {
         this.nacosDiscoveryProperties = discoveryProperties;
         this.config = this.hazelCastConfiguration();
+        this.clientConfig = discoveryProperties.isClientModeOrDefault() ? this.clientConfiguration() : null;
+        this.warmRestart = this.newWarmRestart();
+        this.writeCoalescer = discoveryProperties.isWriteCoalesceEnabledOrDefault() ? new WriteCoalescer(discoveryProperties) : null;
+        this.costAwareMaps = mapNames(discoveryProperties.getCostAwareMaps());
+        this.compressionMaps = mapNames(discoveryProperties.getCompressionMaps());
+        this.compressor = new ValueCompressor(discoveryProperties);
+        if (discoveryProperties.isHotKeysEnabledOrDefault()) {
+            //lets HotKeyTask reach this member's caches
+            this.config.getUserContext().put(HotKeyTask.USER_CONTEXT_KEY, this);
+        }
+    }
+
+    /**
+     * 使用调用方提供的Hazelcast配置, 不经过Nacos发现, 缓存相关参数仍取自discoveryProperties
+     * 需要自定义序列化时调用{@link #registerSerializers(SerializationConfig)}
+     */
+    public HazelConfig(final NacosDiscoveryProperties discoveryProperties, final Config config) {
+        this.nacosDiscoveryProperties = discoveryProperties;
+        this.config = config;
+        if (config.getMapConfigOrNull(NamespaceGenerations.MAP_NAME) == null) {
+            config.addMapConfig(NamespaceGenerations.mapConfig());
+        }
+        if (config.getProperty(ClusterProperty.MAP_INVALIDATION_MESSAGE_BATCH_ENABLED.getName()) == null) {
+            config.setProperty(ClusterProperty.MAP_INVALIDATION_MESSAGE_BATCH_ENABLED.getName(), "false");
+        }
+        if (config.getProperty(RepairingTask.MAX_TOLERATED_MISS_COUNT.getName()) == null) {
+            config.setProperty(RepairingTask.MAX_TOLERATED_MISS_COUNT.getName(), "0");
+        }
+        this.clientConfig = null;
+        this.warmRestart = this.newWarmRestart();
+        this.writeCoalescer = discoveryProperties.isWriteCoalesceEnabledOrDefault() ? new WriteCoalescer(discoveryProperties) : null;
+        this.costAwareMaps = mapNames(discoveryProperties.getCostAwareMaps());
+        this.compressionMaps = mapNames(discoveryProperties.getCompressionMaps());
+        this.compressor = new ValueCompressor(discoveryProperties);
+        if (discoveryProperties.isHotKeysEnabledOrDefault()) {
+            //lets HotKeyTask reach this member's caches
+            this.config.getUserContext().put(HotKeyTask.USER_CONTEXT_KEY, this);
+        }
+    }
+
+    /**
+     * 逗号分隔的Map名
+     */
+    private static Set<String> mapNames(final String names) {
+        return new HashSet<>(Arrays.asList(StringUtils.tokenizeToStringArray(names, ",")));
+    }
+
+    /**
+     * 客户端不持有数据, 没有可以快照的内容
+     */
+    private WarmRestart newWarmRestart() {
+        final String directory = nacosDiscoveryProperties.getWarmRestartDirectory();
+        if (directory == null || directory.isEmpty() || isClientMode()) {
+            return null;
+        }
+        return new WarmRestart(Paths.get(directory), nacosDiscoveryProperties.getWarmRestartIntervalMillisOrDefault());
     }
 
     private Config hazelCastConfiguration() {
@@ -33,35 +224,488 @@ public final class HazelConfig {
 
         config.setInstanceName(nacosDiscoveryProperties.getApplicationnameOrDefault());
         config.setProperty(ClusterProperty.DISCOVERY_SPI_ENABLED.toString(), "true");
+        //destroy() or our own hook shuts the member down in order, the default hook would terminate it concurrently
+        config.setProperty(ClusterProperty.SHUTDOWNHOOK_ENABLED.toString(), "false");
+        //generation reads go through a near cache, batched invalidations would keep serving a flushed namespace for up to 10s
+        config.setProperty(ClusterProperty.MAP_INVALIDATION_MESSAGE_BATCH_ENABLED.toString(), "false");
+        //a single lost generation invalidation must be repaired, by default up to 10 missed sequences are tolerated
+        config.setProperty(RepairingTask.MAX_TOLERATED_MISS_COUNT.getName(), "0");
         config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(false);
         config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
 
+        config.getNetworkConfig().getJoin().setDiscoveryConfig(nacosDiscoveryConfig());
+        if (nacosDiscoveryProperties.getZone() != null) {
+            //backups are placed in a different zone than the owner
+            config.getPartitionGroupConfig().setEnabled(true).setGroupType(PartitionGroupConfig.MemberGroupType.ZONE_AWARE);
+        }
+        config.addMapConfig(NamespaceGenerations.mapConfig());
+        registerSerializers(config.getSerializationConfig());
+        return config;
+    }
+
+    /**
+     * 客户端通过同一个发现策略找到成员(不注册自己), 直连分区所有者, 读取走客户端近缓存
+     */
+    private ClientConfig clientConfiguration() {
+        final ClientConfig clientConfig = new ClientConfig();
+        clientConfig.setInstanceName(nacosDiscoveryProperties.getApplicationnameOrDefault() + "-client");
+        clientConfig.setClusterName(config.getClusterName());
+        clientConfig.setProperty(ClientProperty.DISCOVERY_SPI_ENABLED.getName(), "true");
+        clientConfig.setProperty(ClientProperty.SHUTDOWNHOOK_ENABLED.getName(), "false");
+        clientConfig.setProperty(RepairingTask.MAX_TOLERATED_MISS_COUNT.getName(), "0");
+        clientConfig.addNearCacheConfig(NamespaceGenerations.nearCacheConfig());
+        clientConfig.getNetworkConfig().setDiscoveryConfig(nacosDiscoveryConfig());
+        clientConfig.getNetworkConfig().setSmartRouting(true);
+        if (!Boolean.FALSE.equals(nacosDiscoveryProperties.getNearCacheEnabled())) {
+            //client mode exists to read from local memory, so the near cache is on unless explicitly disabled
+            clientConfig.addNearCacheConfig(newNearCacheConfig("*", true));
+        }
+        registerSerializers(clientConfig.getSerializationConfig());
+        return clientConfig;
+    }
+
+    private static DiscoveryConfig nacosDiscoveryConfig() {
         final DiscoveryConfig discoveryConfig = new DiscoveryConfig();
         final NacosDiscoveryStrategyFactory factory = new NacosDiscoveryStrategyFactory();
         final DiscoveryStrategyConfig discoveryStrategyConfig = new DiscoveryStrategyConfig(factory);
-
         discoveryConfig.setDiscoveryStrategyConfigs(ImmutableList.of(discoveryStrategyConfig));
-        config.getNetworkConfig().getJoin().setDiscoveryConfig(discoveryConfig);
-        return config;
+        return discoveryConfig;
+    }
+
+    /**
+     * 是否以客户端方式连接集群
+     */
+    public boolean isClientMode() {
+        return clientConfig != null;
+    }
+
+    /**
+     * 开启bootstrap.eager时在所有单例创建完成后并行启动Nacos客户端和Hazelcast节点, 不再等第一次缓存访问
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        final String tuningDataId = nacosDiscoveryProperties.getTuningDataId();
+        if (tuningDataId != null && !tuningDataId.isEmpty()) {
+            //before any map is created, so the first map configs already use the tuned values
+            tuningSubscriber = new TuningSubscriber(this, nacosDiscoveryProperties);
+            tuningSubscriber.start();
+        }
+        if (!nacosDiscoveryProperties.isBootstrapEagerOrDefault()) {
+            return;
+        }
+        final long startNanos = System.nanoTime();
+        final ExecutorService bootstrap = Executors.newFixedThreadPool(2, runnable -> {
+            final Thread thread = new Thread(runnable, "hazelcast-nacos-bootstrap");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture.runAsync(this::warmUpNamingService, bootstrap);
+        CompletableFuture.supplyAsync(this::instance, bootstrap).whenComplete((instance, e) -> {
+            if (e != null) {
+                log.error("Hazelcast启动失败", e);
+                readiness.completeExceptionally(e);
+            } else {
+                log.info("Hazelcast并行启动完成, 耗时{}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            }
+        });
+        bootstrap.shutdown();
+    }
+
+    private void warmUpNamingService() {
+        try {
+            warmNamingService = NamingServicePool.acquire(nacosDiscoveryProperties.getNacosClientProperties());
+        } catch (Exception e) {
+            //the discovery strategy creates its own client and reports the error
+            log.warn("预热Nacos客户端失败", e);
+        }
+    }
+
+    /**
+     * 按{@link GracefulShutdown}的顺序停机, 先从Nacos注销再离开集群
+     * Spring关闭和JVM关闭钩子只有先到的一方执行, 另一方等它完成
+     */
+    @Override
+    public void destroy() {
+        if (!destroyed.compareAndSet(false, true)) {
+            stopped.join();
+            return;
+        }
+        try {
+            if (Thread.currentThread() != shutdownHook) {
+                synchronized (config) {
+                    if (hookRegistered) {
+                        removeShutdownHook();
+                    }
+                }
+            }
+            if (tuningSubscriber != null) {
+                tuningSubscriber.stop();
+            }
+            new GracefulShutdown(nacosDiscoveryProperties).run(hazelcastInstance, !isClientMode(), this::drain);
+            if (warmRestart != null) {
+                warmRestart.shutdown();
+            }
+            final NamingService namingService = warmNamingService;
+            if (namingService != null) {
+                warmNamingService = null;
+                NamingServicePool.release(namingService);
+            }
+        } finally {
+            stopped.complete(null);
+        }
+    }
+
+    /**
+     * 调用方持有config锁, destroy()之后不再注册
+     */
+    private void registerShutdownHook() {
+        if (hookRegistered || destroyed.get()) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+            hookRegistered = true;
+        } catch (IllegalStateException e) {
+            //the JVM is already exiting, destroy() is left to Spring
+        }
+    }
+
+    private void removeShutdownHook() {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            //the JVM is already exiting, the hook will find destroyed set
+        }
     }
 
+    /**
+     * 停机时写出本地缓冲的内容, 此时实例仍在集群中
+     */
+    private void drain() {
+        if (writeCoalescer != null) {
+            writeCoalescer.close(WRITE_COALESCE_CLOSE_MILLIS);
+        }
+        final L1Invalidator invalidator = l1Invalidator;
+        if (invalidator != null) {
+            invalidator.close();
+        }
+        if (warmRestart != null) {
+            warmRestart.snapshotAll();
+        }
+    }
+
+    /**
+     * 实例完成启动和入群后完成, 可用于就绪探针
+     */
+    public CompletableFuture<HazelcastInstance> getReadiness() {
+        return readiness;
+    }
+
+    /**
+     * 从开始启动到实例可以提供服务的毫秒数, 尚未启动时为-1
+     */
+    public long getStartupMillis() {
+        return startupMillis;
+    }
+
+    /**
+     * 缓存key使用定长的自定义序列化, MyBatis不在classpath时跳过CacheKey
+     */
+    public static void registerSerializers(final SerializationConfig serializationConfig) {
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(GenerationKey.class)
+            .setImplementation(new GenerationKeySerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(CostAwareValue.class)
+            .setImplementation(new CostAwareValueSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(CompressedValue.class)
+            .setImplementation(new CompressedValueSerializer()));
+        if (ClassUtils.isPresent(MYBATIS_CACHE_KEY, HazelConfig.class.getClassLoader())) {
+            serializationConfig.addSerializerConfig(new SerializerConfig()
+                .setTypeClassName(MYBATIS_CACHE_KEY)
+                .setClassName(CACHE_KEY_SERIALIZER));
+        }
+    }
+
+    /**
+     * 获取实例并确保id对应的Map配置已注册
+     * 已注册时只有一次无锁读取, 首次注册时若实例已启动则通过动态配置下发到整个集群
+     */
     public HazelcastInstance getHazelcastInstance(final String id) {
-        if (config.getMapConfig(id) == null) {
-            synchronized (HazelConfig.class) {
-                if (config.getMapConfig(id) == null) {
-                    final EvictionConfig evictionConfig = new EvictionConfig();
-                    evictionConfig.setEvictionPolicy(nacosDiscoveryProperties.getEvictionPolicyOrDefault());
-                    evictionConfig.setMaxSizePolicy(nacosDiscoveryProperties.getMaxSizePolicyOrDefault());
-                    evictionConfig.setSize(nacosDiscoveryProperties.getSizeOrDefault());
-
-                    final MapConfig mapConfig = new MapConfig();
-                    mapConfig.setName(id);
-                    mapConfig.setEvictionConfig(evictionConfig);
-                    mapConfig.setTimeToLiveSeconds(nacosDiscoveryProperties.getTimeToLiveSecondOrDefault());
+        final HazelcastInstance instance = hazelcastInstance;
+        if (instance != null && mapConfigs.containsKey(id) && isRunning(instance)) {
+            return instance;
+        }
+        mapConfigs.computeIfAbsent(id, this::registerMapConfig);
+        return instance();
+    }
+
+    /**
+     * 获取id对应的缓存, 同一id复用同一个对象
+     */
+    public HazelCache getCache(final String id) {
+        final HazelCache cache = caches.get(id);
+        if (cache != null) {
+            return cache;
+        }
+        return caches.computeIfAbsent(id, name -> {
+            final HazelCache created = new HazelCache(name, this, nacosDiscoveryProperties);
+            metrics.register(created.getMetrics());
+            return created;
+        });
+    }
+
+    /**
+     * 本节点上该Map最近一个窗口的热点key, 未开启统计或没有使用过该Map时返回null
+     */
+    HotKeyReport localHotKeys(final String id) {
+        final HazelCache cache = caches.get(id);
+        return cache == null ? null : cache.getHotKeys();
+    }
+
+    /**
+     * 命名空间版本号, 首次使用时注册监听器, 实例重启后重新创建
+     */
+    NamespaceGenerations getGenerations() {
+        final HazelcastInstance instance = instance();
+        NamespaceGenerations current = generations;
+        if (current == null || !current.isBoundTo(instance)) {
+            synchronized (caches) {
+                current = generations;
+                if (current == null || !current.isBoundTo(instance)) {
+                    current = new NamespaceGenerations(instance);
+                    generations = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Map首次获取时开始热重启快照
+     */
+    void registerWarmRestart(final HazelcastInstance instance, final IMap<Object, Object> map) {
+        if (warmRestart != null) {
+            warmRestart.register(instance, map);
+        }
+    }
+
+    /**
+     * 未开启合并写入时返回null
+     */
+    WriteCoalescer getWriteCoalescer() {
+        return writeCoalescer;
+    }
+
+    /**
+     * 一级缓存失效广播, 首次使用时订阅, 实例重启后重新订阅
+     */
+    L1Invalidator getL1Invalidator() {
+        final HazelcastInstance instance = instance();
+        L1Invalidator current = l1Invalidator;
+        if (current == null || !current.isBoundTo(instance)) {
+            synchronized (caches) {
+                current = l1Invalidator;
+                if (current == null || !current.isBoundTo(instance)) {
+                    if (current != null) {
+                        current.close();
+                    }
+                    current = new L1Invalidator(instance, caches, nacosDiscoveryProperties.getL1InvalidationDelayMillisOrDefault());
+                    l1Invalidator = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private HazelcastInstance instance() {
+        HazelcastInstance instance = hazelcastInstance;
+        if (!isRunning(instance)) {
+            synchronized (config) {
+                instance = hazelcastInstance;
+                if (!isRunning(instance)) {
+                    final boolean restarted = instance != null;
+                    final long startNanos = System.nanoTime();
+                    MemberReadiness.starting(nacosDiscoveryProperties.getApplicationnameOrDefault());
+                    instance = isClientMode()
+                        ? HazelcastClient.getOrCreateHazelcastClient(clientConfig)
+                        : Hazelcast.getOrCreateHazelcastInstance(config);
+                    if (restarted || isClientMode()) {
+                        //dynamic map configs died with the old instance, a client always sends them to the cluster
+                        for (MapConfig mapConfig : mapConfigs.values()) {
+                            if (!config.getMapConfigs().containsKey(mapConfig.getName())) {
+                                addDynamicMapConfig(instance, mapConfig);
+                            }
+                        }
+                    }
+                    metrics.attach(instance);
+                    hazelcastInstance = instance;
+                    startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    MemberReadiness.ready(nacosDiscoveryProperties.getApplicationnameOrDefault());
+                    readiness.complete(instance);
+                    registerShutdownHook();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private static boolean isRunning(final HazelcastInstance instance) {
+        try {
+            return instance != null && instance.getLifecycleService().isRunning();
+        } catch (HazelcastInstanceNotActiveException e) {
+            return false;
+        }
+    }
+
+    private MapConfig registerMapConfig(final String id) {
+        final MapConfig mapConfig = newMapConfig(id);
+        synchronized (config) {
+            final HazelcastInstance instance = hazelcastInstance;
+            if (!isRunning(instance)) {
+                if (!isClientMode()) {
+                    config.addMapConfig(mapConfig);
+                }
+                return mapConfig;
+            }
+        }
+        addDynamicMapConfig(hazelcastInstance, mapConfig);
+        return mapConfig;
+    }
+
+    /**
+     * 集群中已经有不同的同名Map配置(其他成员先注册, 或调优参数变化后)时沿用集群的配置, 返回是否生效
+     */
+    private static boolean addDynamicMapConfig(final HazelcastInstance instance, final MapConfig mapConfig) {
+        try {
+            instance.getConfig().addMapConfig(mapConfig);
+            return true;
+        } catch (InvalidConfigurationException e) {
+            log.info("Map {}沿用集群中已有的配置: {}", mapConfig.getName(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 应用新版本的调优参数并逐项记录审计日志
+     * TTL在下一次写入时生效; 已创建的Map在集群中的配置不能修改, 其余参数对之后创建的Map生效
+     */
+    void applyTuning(final CacheTuning next) {
+        final CacheTuning previous = tuning;
+        final Map<String, String[]> changes = next.diff(previous);
+        tuning = next;
+        if (changes.isEmpty()) {
+            AUDIT.info("tuning v{} unchanged", next.getVersion());
+            return;
+        }
+        for (Map.Entry<String, String[]> change : changes.entrySet()) {
+            AUDIT.info("tuning v{} {}: {} -> {}", next.getVersion(), change.getKey(), change.getValue()[0], change.getValue()[1]);
+        }
+        for (String id : mapConfigs.keySet()) {
+            final MapConfig updated = newMapConfig(id);
+            if (!updated.equals(mapConfigs.get(id))) {
+                mapConfigs.put(id, updated);
+                AUDIT.info("tuning v{} map {}: {}", next.getVersion(), id, applyMapConfig(updated));
+            }
+        }
+    }
+
+    private String applyMapConfig(final MapConfig mapConfig) {
+        synchronized (config) {
+            if (!isRunning(hazelcastInstance)) {
+                if (!isClientMode()) {
                     config.addMapConfig(mapConfig);
                 }
+                return "applied before start";
             }
         }
-        return Hazelcast.getOrCreateHazelcastInstance(config);
+        //hazelcast rejects changing the dynamic config of a map that already exists
+        return addDynamicMapConfig(hazelcastInstance, mapConfig)
+            ? "applied through dynamic config"
+            : "ttl applies to new writes, other settings apply after the map is recreated";
+    }
+
+    /**
+     * 写入条目时使用的TTL秒数
+     */
+    int timeToLiveSeconds(final String id) {
+        return tuning.getInt(id, CacheTuning.TTL, nacosDiscoveryProperties.getTimeToLiveSecondOrDefault());
+    }
+
+    /**
+     * 调优参数中的eviction为GDSF, 或本地配置的cost.aware.maps包含该Map
+     */
+    boolean isCostAware(final String id) {
+        final String eviction = tuning.get(id, CacheTuning.EVICTION);
+        if (eviction != null) {
+            return CacheTuning.GDSF.equals(eviction);
+        }
+        return costAwareMaps.contains(id) || costAwareMaps.contains(ALL_MAPS);
+    }
+
+    /**
+     * 该Map不压缩时返回null
+     */
+    ValueCompressor getCompressor(final String id) {
+        return compressionMaps.contains(id) || compressionMaps.contains(ALL_MAPS) ? compressor : null;
+    }
+
+    /**
+     * 读取时使用, 与本节点是否压缩这个Map无关
+     */
+    ValueCompressor getDecompressor() {
+        return compressor;
+    }
+
+    private MapConfig newMapConfig(final String id) {
+        final CacheTuning current = tuning;
+        final EvictionConfig evictionConfig = new EvictionConfig();
+        if (isCostAware(id)) {
+            //by class name, so the config compares equal across tuning versions and reaches members from a client
+            evictionConfig.setComparatorClassName(CostAwareEvictionComparator.class.getName());
+        } else {
+            evictionConfig.setEvictionPolicy(current.getEnum(id, CacheTuning.EVICTION, EvictionPolicy.class,
+                nacosDiscoveryProperties.getEvictionPolicyOrDefault()));
+        }
+        evictionConfig.setMaxSizePolicy(current.getEnum(id, CacheTuning.MAX_SIZE_POLICY, MaxSizePolicy.class,
+            nacosDiscoveryProperties.getMaxSizePolicyOrDefault()));
+        evictionConfig.setSize(current.getInt(id, CacheTuning.SIZE, nacosDiscoveryProperties.getSizeOrDefault()));
+
+        final MapConfig mapConfig = new MapConfig();
+        mapConfig.setName(id);
+        mapConfig.setEvictionConfig(evictionConfig);
+        mapConfig.setTimeToLiveSeconds(timeToLiveSeconds(id));
+        mapConfig.setBackupCount(current.getInt(id, CacheTuning.BACKUP_COUNT, MapConfig.DEFAULT_BACKUP_COUNT));
+        mapConfig.setReadBackupData(nacosDiscoveryProperties.isReadBackupDataOrDefault());
+        if (nacosDiscoveryProperties.isNearCacheEnabledOrDefault()) {
+            mapConfig.setNearCacheConfig(newNearCacheConfig(id, false));
+        }
+        return mapConfig;
+    }
+
+    /**
+     * 读多写少的二级缓存命中时直接读本地内存, 不再走网络
+     * 预加载只有客户端近缓存支持, Hazelcast校验成员近缓存配置时会拒绝预加载
+     */
+    private NearCacheConfig newNearCacheConfig(final String id, final boolean client) {
+        final EvictionConfig evictionConfig = new EvictionConfig();
+        evictionConfig.setEvictionPolicy(nacosDiscoveryProperties.getNearCachePolicyOrDefault());
+        evictionConfig.setMaxSizePolicy(MaxSizePolicy.ENTRY_COUNT);
+        evictionConfig.setSize(tuning.getInt(id, CacheTuning.NEAR_CACHE_SIZE, nacosDiscoveryProperties.getNearCacheSizeOrDefault()));
+
+        final NearCacheConfig nearCacheConfig = new NearCacheConfig(id);
+        nearCacheConfig.setInMemoryFormat(nacosDiscoveryProperties.getNearCacheInMemoryFormatOrDefault());
+        nearCacheConfig.setInvalidateOnChange(nacosDiscoveryProperties.isNearCacheInvalidateOnChangeOrDefault());
+        nearCacheConfig.setEvictionConfig(evictionConfig);
+        if (client) {
+            final NearCachePreloaderConfig preloaderConfig = new NearCachePreloaderConfig();
+            preloaderConfig.setEnabled(nacosDiscoveryProperties.isNearCachePreloadOrDefault());
+            preloaderConfig.setDirectory(nacosDiscoveryProperties.getNearCachePreloadDirectoryOrDefault());
+            nearCacheConfig.setPreloaderConfig(preloaderConfig);
+        } else if (nacosDiscoveryProperties.isNearCachePreloadOrDefault()) {
+            log.warn("成员近缓存不支持预加载, 忽略near.cache.preload: {}", id);
+        }
+        return nearCacheConfig;
     }
 }
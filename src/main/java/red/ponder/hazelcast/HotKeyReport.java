@@ -0,0 +1,155 @@
+package red.ponder.hazelcast;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个Map在一个统计窗口内的热点key和各分区操作数, 次数都是按抽样率放大后的估计值
+ * 集群范围的报告由各成员的报告合并而来, 同一个key的次数相加, 分区操作数按分区相加
+ *
+ * @author ponder
+ */
+public final class HotKeyReport implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MAX_KEY_LENGTH = 256;
+
+    private final String map;
+
+    private final long startMillis;
+
+    private final long endMillis;
+
+    private final List<HotKey> keys;
+
+    private final long[] partitionOps;
+
+    HotKeyReport(final String map, final long startMillis, final long endMillis, final List<HotKey> keys, final long[] partitionOps) {
+        this.map = map;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        final List<HotKey> sorted = new ArrayList<>(keys);
+        sorted.sort((a, b) -> Long.compare(b.count, a.count));
+        this.keys = Collections.unmodifiableList(sorted);
+        this.partitionOps = partitionOps;
+    }
+
+    static HotKeyReport empty(final String map) {
+        final long now = System.currentTimeMillis();
+        return new HotKeyReport(map, now, now, Collections.emptyList(), new long[0]);
+    }
+
+    /**
+     * key的toString, 过长时截断, 报告不持有key本身
+     */
+    static String describe(final Object key) {
+        final String text = String.valueOf(key);
+        return text.length() > MAX_KEY_LENGTH ? text.substring(0, MAX_KEY_LENGTH) + "..." : text;
+    }
+
+    /**
+     * 合并各成员的报告, 时间范围取并集, 只保留次数最多的limit个key
+     */
+    static HotKeyReport merge(final String map, final List<HotKeyReport> reports, final int limit) {
+        if (reports.isEmpty()) {
+            return empty(map);
+        }
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        final Map<String, Long> counts = new HashMap<>();
+        long[] ops = new long[0];
+        for (HotKeyReport report : reports) {
+            start = Math.min(start, report.startMillis);
+            end = Math.max(end, report.endMillis);
+            for (HotKey key : report.keys) {
+                counts.merge(key.key, key.count, Long::sum);
+            }
+            if (report.partitionOps.length > ops.length) {
+                ops = Arrays.copyOf(ops, report.partitionOps.length);
+            }
+            for (int i = 0; i < report.partitionOps.length; i++) {
+                ops[i] += report.partitionOps[i];
+            }
+        }
+        final List<HotKey> keys = new ArrayList<>(counts.size());
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            keys.add(new HotKey(count.getKey(), count.getValue()));
+        }
+        final HotKeyReport merged = new HotKeyReport(map, start, end, keys, ops);
+        return merged.keys.size() <= limit ? merged : new HotKeyReport(map, start, end, merged.keys.subList(0, limit), ops);
+    }
+
+    public String getMap() {
+        return map;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * 按次数从多到少
+     */
+    public List<HotKey> getKeys() {
+        return keys;
+    }
+
+    /**
+     * 下标为分区号
+     */
+    public long[] getPartitionOps() {
+        return partitionOps.clone();
+    }
+
+    /**
+     * 分区每秒的估计操作数
+     */
+    public double getPartitionRate(final int partitionId) {
+        if (partitionId >= partitionOps.length || endMillis <= startMillis) {
+            return 0;
+        }
+        return partitionOps[partitionId] * 1000.0 / (endMillis - startMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "HotKeyReport{map='" + map + "', startMillis=" + startMillis + ", endMillis=" + endMillis + ", keys=" + keys + '}';
+    }
+
+    public static final class HotKey implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+
+        private final long count;
+
+        HotKey(final String key, final long count) {
+            this.key = key;
+            this.count = count;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + count;
+        }
+    }
+}
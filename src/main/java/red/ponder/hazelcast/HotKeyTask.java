@@ -0,0 +1,76 @@
+package red.ponder.hazelcast;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import com.hazelcast.core.IExecutorService;
+
+/**
+ * 在每个成员上取本地的热点key报告, 成员上的HazelConfig放在Hazelcast配置的userContext中
+ * 没有开启热点统计或没有使用过该Map的成员返回null
+ *
+ * @author ponder
+ */
+final class HotKeyTask implements Callable<HotKeyReport>, HazelcastInstanceAware, Serializable {
+    private static final Logger log = LoggerFactory.getLogger(HotKeyTask.class);
+
+    private static final long serialVersionUID = 1L;
+
+    static final String USER_CONTEXT_KEY = HazelConfig.class.getName();
+
+    private static final String EXECUTOR = "hazelcast-nacos-hot-keys";
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final String map;
+
+    private transient HazelcastInstance hazelcastInstance;
+
+    HotKeyTask(final String map) {
+        this.map = map;
+    }
+
+    @Override
+    public void setHazelcastInstance(final HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @Override
+    public HotKeyReport call() {
+        final Object hazelConfig = hazelcastInstance.getConfig().getUserContext().get(USER_CONTEXT_KEY);
+        return hazelConfig instanceof HazelConfig ? ((HazelConfig) hazelConfig).localHotKeys(map) : null;
+    }
+
+    /**
+     * 向所有成员收集报告, 超时或失败的成员跳过, 返回的是部分结果
+     */
+    static List<HotKeyReport> collect(final HazelcastInstance hazelcastInstance, final String map) {
+        final IExecutorService executor = hazelcastInstance.getExecutorService(EXECUTOR);
+        final List<HotKeyReport> reports = new ArrayList<>();
+        for (Future<HotKeyReport> future : executor.submitToAllMembers(new HotKeyTask(map)).values()) {
+            try {
+                final HotKeyReport report = future.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (report != null) {
+                    reports.add(report);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while collecting hot keys", e);
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("收集{}的热点key失败, 跳过该成员", map, e);
+            }
+        }
+        return reports;
+    }
+}
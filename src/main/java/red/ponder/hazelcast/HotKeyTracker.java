@@ -0,0 +1,145 @@
+package red.ponder.hazelcast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import red.ponder.hazelcast.nacos.NacosDiscoveryProperties;
+
+/**
+ * 单个Map的热点key统计, 只记录抽样到的操作, 内存固定
+ * Count-Min Sketch估计每个key的次数, 估计值超过候选集合中最小值的key替换进候选集合
+ * 同时按分区计数, 每个窗口结束时生成一份报告并清零
+ *
+ * @author ponder
+ */
+final class HotKeyTracker {
+
+    private static final int DEPTH = 4;
+
+    private static final int WIDTH = 1024;
+
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private final String map;
+
+    private final int sampleRate;
+
+    private final int topK;
+
+    private final long windowMillis;
+
+    private final int[][] sketch = new int[DEPTH][WIDTH];
+
+    /**
+     * 候选热点key及其估计次数, 不超过topK个
+     */
+    private final Map<Object, Integer> candidates = new HashMap<>();
+
+    private long[] partitionOps = new long[0];
+
+    private long windowStart = System.currentTimeMillis();
+
+    private volatile HotKeyReport last;
+
+    HotKeyTracker(final String map, final NacosDiscoveryProperties nacosDiscoveryProperties) {
+        this.map = map;
+        this.sampleRate = Math.max(1, nacosDiscoveryProperties.getHotKeysSampleOrDefault());
+        this.topK = Math.max(1, nacosDiscoveryProperties.getHotKeysTopOrDefault());
+        this.windowMillis = nacosDiscoveryProperties.getHotKeysWindowMillisOrDefault();
+        this.last = HotKeyReport.empty(map);
+    }
+
+    int getTopK() {
+        return topK;
+    }
+
+    /**
+     * 不加锁, 未抽中的操作只多一次随机数
+     */
+    boolean sample() {
+        return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    synchronized void record(final Object key, final int partitionId) {
+        final long now = System.currentTimeMillis();
+        if (now - windowStart >= windowMillis) {
+            roll(now);
+        }
+        final int estimate = increment(key);
+        if (candidates.containsKey(key) || candidates.size() < topK) {
+            candidates.put(key, estimate);
+        } else {
+            Map.Entry<Object, Integer> coldest = null;
+            for (Map.Entry<Object, Integer> candidate : candidates.entrySet()) {
+                if (coldest == null || candidate.getValue() < coldest.getValue()) {
+                    coldest = candidate;
+                }
+            }
+            if (coldest != null && estimate > coldest.getValue()) {
+                candidates.remove(coldest.getKey());
+                candidates.put(key, estimate);
+            }
+        }
+        if (partitionId >= partitionOps.length) {
+            partitionOps = Arrays.copyOf(partitionOps, partitionId + 1);
+        }
+        partitionOps[partitionId]++;
+    }
+
+    /**
+     * 最近一个完整窗口的报告, 长时间没有操作时窗口一直延续到下一次操作
+     */
+    HotKeyReport report() {
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            if (now - windowStart >= windowMillis) {
+                roll(now);
+            }
+        }
+        return last;
+    }
+
+    private int increment(final Object key) {
+        final int hash = key.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            final int index = indexOf(hash, row);
+            if (sketch[row][index] < Integer.MAX_VALUE) {
+                sketch[row][index]++;
+            }
+            estimate = Math.min(estimate, sketch[row][index]);
+        }
+        return estimate;
+    }
+
+    private static int indexOf(final int hash, final int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & (WIDTH - 1);
+    }
+
+    /**
+     * 抽样计数按抽样率放大成估计的操作数
+     */
+    private void roll(final long now) {
+        final List<HotKeyReport.HotKey> keys = new ArrayList<>(candidates.size());
+        for (Map.Entry<Object, Integer> candidate : candidates.entrySet()) {
+            keys.add(new HotKeyReport.HotKey(HotKeyReport.describe(candidate.getKey()), (long) candidate.getValue() * sampleRate));
+        }
+        candidates.clear();
+        final long[] ops = new long[partitionOps.length];
+        for (int i = 0; i < ops.length; i++) {
+            ops[i] = partitionOps[i] * sampleRate;
+        }
+        last = new HotKeyReport(map, windowStart, now, keys, ops);
+        for (int[] row : sketch) {
+            Arrays.fill(row, 0);
+        }
+        Arrays.fill(partitionOps, 0);
+        windowStart = now;
+    }
+}
@@ -0,0 +1,151 @@
+package red.ponder.hazelcast;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.topic.ITopic;
+import com.hazelcast.topic.Message;
+import com.hazelcast.topic.ReliableMessageListener;
+
+/**
+ * 命名空间清空时通知其他节点丢弃一级缓存
+ * 一个窗口内的多次清空合并成一条ReliableTopic消息, 批量更新数据时不会每条语句发一次广播
+ *
+ * @author ponder
+ */
+final class L1Invalidator implements ReliableMessageListener<L1Invalidator.Invalidation> {
+    private static final Logger log = LoggerFactory.getLogger(L1Invalidator.class);
+
+    static final String TOPIC_NAME = "hazelcast-nacos-l1-invalidation";
+
+    private final String source = UUID.randomUUID().toString();
+
+    private final Map<String, HazelCache> caches;
+
+    private final long delayMillis;
+
+    private final HazelcastInstance hazelcastInstance;
+
+    private final ITopic<Invalidation> topic;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "hazelcast-nacos-l1-invalidation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    L1Invalidator(final HazelcastInstance hazelcastInstance, final Map<String, HazelCache> caches, final long delayMillis) {
+        this.caches = caches;
+        this.delayMillis = delayMillis;
+        this.hazelcastInstance = hazelcastInstance;
+        this.topic = hazelcastInstance.getReliableTopic(TOPIC_NAME);
+        this.topic.addMessageListener(this);
+    }
+
+    /**
+     * 本节点已经清空了自己的一级缓存, 在合并窗口结束时通知其他节点
+     */
+    void namespaceChanged(final String namespace) {
+        pending.add(namespace);
+        if (scheduled.compareAndSet(false, true)) {
+            flusher.schedule(this::flush, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        scheduled.set(false);
+        final List<String> namespaces = new ArrayList<>();
+        for (Iterator<String> iterator = pending.iterator(); iterator.hasNext(); ) {
+            namespaces.add(iterator.next());
+            iterator.remove();
+        }
+        if (namespaces.isEmpty()) {
+            return;
+        }
+        try {
+            topic.publish(new Invalidation(source, namespaces.toArray(new String[0])));
+        } catch (RuntimeException e) {
+            log.warn("一级缓存失效广播失败, 其他节点在TTL后失效: {}", namespaces, e);
+        }
+    }
+
+    boolean isBoundTo(final HazelcastInstance instance) {
+        return hazelcastInstance == instance;
+    }
+
+    /**
+     * 停机前立即广播尚未发出的清空
+     */
+    void close() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    @Override
+    public void onMessage(final Message<Invalidation> message) {
+        final Invalidation invalidation = message.getMessageObject();
+        if (source.equals(invalidation.source)) {
+            return;
+        }
+        for (String namespace : invalidation.namespaces) {
+            final HazelCache cache = caches.get(namespace);
+            if (cache != null) {
+                cache.invalidateLocal();
+            }
+        }
+    }
+
+    @Override
+    public long retrieveInitialSequence() {
+        return -1;
+    }
+
+    @Override
+    public void storeSequence(final long sequence) {
+    }
+
+    /**
+     * 丢失的消息由一级缓存的TTL兜底, 不因此停止监听
+     */
+    @Override
+    public boolean isLossTolerant() {
+        return true;
+    }
+
+    @Override
+    public boolean isTerminal(final Throwable failure) {
+        return false;
+    }
+
+    static final class Invalidation implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String source;
+
+        private final String[] namespaces;
+
+        Invalidation(final String source, final String[] namespaces) {
+            this.source = source;
+            this.namespaces = namespaces;
+        }
+    }
+}
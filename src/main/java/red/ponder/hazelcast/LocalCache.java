@@ -0,0 +1,160 @@
+package red.ponder.hazelcast;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * IMap前面的本地一级缓存, 命中时只有一次ConcurrentHashMap读取, 不加锁
+ * 容量固定为环形槽位数, 满了以后从时钟指针处取几个槽位, 新key的访问频率高于其中最冷的条目才替换它(TinyLFU准入)
+ * 其他节点的修改不会逐个key同步过来, 靠命名空间清空广播和较短的TTL控制脏读时间
+ * value由HazelCache存为序列化后的Data, 这里不关心具体类型
+ *
+ * @author ponder
+ */
+final class LocalCache {
+
+    private static final int SAMPLE = 4;
+
+    private final ConcurrentHashMap<Object, Node> data;
+
+    private final AtomicReferenceArray<Node> slots;
+
+    private final AtomicLong hand = new AtomicLong();
+
+    private final FrequencySketch sketch;
+
+    /**
+     * 每次失效加一, 用于丢弃失效之前开始的IMap读取结果
+     */
+    private final AtomicLong epoch = new AtomicLong();
+
+    private final long timeToLiveMillis;
+
+    LocalCache(final int capacity, final long timeToLiveMillis) {
+        final int size = Math.max(1, capacity);
+        this.data = new ConcurrentHashMap<>(size * 4 / 3 + 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sketch = new FrequencySketch(size);
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    Object get(final Object key) {
+        sketch.increment(key);
+        final Node node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (node.isExpired(System.currentTimeMillis())) {
+            remove(node);
+            return null;
+        }
+        return node.value;
+    }
+
+    long epoch() {
+        return epoch.get();
+    }
+
+    /**
+     * 只在读取开始后没有发生失效时写入
+     */
+    void putIfEpoch(final Object key, final Object value, final long expectedEpoch) {
+        if (epoch.get() == expectedEpoch) {
+            put(key, value);
+        }
+    }
+
+    void put(final Object key, final Object value) {
+        final long now = System.currentTimeMillis();
+        final Node current = data.get(key);
+        if (current != null) {
+            final Node updated = new Node(key, value, now + timeToLiveMillis, current.slot);
+            if (slots.compareAndSet(current.slot, current, updated)) {
+                data.replace(key, current, updated);
+            }
+            return;
+        }
+        final int candidateFrequency = sketch.frequency(key);
+        int victimSlot = -1;
+        Node victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        for (int i = 0; i < SAMPLE; i++) {
+            final int slot = (int) Math.floorMod(hand.getAndIncrement(), (long) slots.length());
+            final Node node = slots.get(slot);
+            if (node == null || node.isExpired(now)) {
+                victimSlot = slot;
+                victim = node;
+                break;
+            }
+            final int frequency = sketch.frequency(node.key);
+            if (frequency < victimFrequency) {
+                victimSlot = slot;
+                victim = node;
+                victimFrequency = frequency;
+            }
+        }
+        if (victim != null && !victim.isExpired(now) && candidateFrequency <= victimFrequency) {
+            //TinyLFU: a one-hit wonder does not push out a hotter entry
+            return;
+        }
+        final Node node = new Node(key, value, now + timeToLiveMillis, victimSlot);
+        if (!slots.compareAndSet(victimSlot, victim, node)) {
+            return;
+        }
+        if (victim != null) {
+            data.remove(victim.key, victim);
+        }
+        final Node previous = data.put(key, node);
+        if (previous != null && previous.slot != victimSlot) {
+            slots.compareAndSet(previous.slot, previous, null);
+        }
+    }
+
+    void invalidate(final Object key) {
+        epoch.incrementAndGet();
+        final Node node = data.get(key);
+        if (node != null) {
+            remove(node);
+        }
+    }
+
+    void clear() {
+        epoch.incrementAndGet();
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+        data.clear();
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    private void remove(final Node node) {
+        if (data.remove(node.key, node)) {
+            slots.compareAndSet(node.slot, node, null);
+        }
+    }
+
+    private static final class Node {
+        private final Object key;
+
+        private final Object value;
+
+        private final long expireAt;
+
+        private final int slot;
+
+        private Node(final Object key, final Object value, final long expireAt, final int slot) {
+            this.key = key;
+            this.value = value;
+            this.expireAt = expireAt;
+            this.slot = slot;
+        }
+
+        private boolean isExpired(final long now) {
+            return now >= expireAt;
+        }
+    }
+}
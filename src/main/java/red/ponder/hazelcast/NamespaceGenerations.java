@@ -0,0 +1,114 @@
+package red.ponder.hazelcast;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.NearCacheConfig;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.IMap;
+
+/**
+ * 各命名空间的版本号, 集群内保存在一个IMap中
+ * 读取走带失效通知的近缓存, 成员关闭了失效消息的批量发送(hazelcast.map.invalidation.batch.enabled=false),
+ * 其他节点的清空在一次事件投递的延迟(通常为毫秒级)后可见; 事件丢失时由近缓存的修复任务按序列号补齐
+ * (容忍的丢失数设为0), 最长滞后hazelcast.invalidation.reconciliation.interval.seconds(默认60秒)
+ * 本节点自己递增的版本号另外记一份下限, 失效通知到达之前也能读到自己的清空
+ * 客户端模式下失效消息由成员发送, 连接的集群需要同样关闭批量发送
+ *
+ * @author ponder
+ */
+final class NamespaceGenerations {
+
+    static final String MAP_NAME = "hazelcast-nacos-generations";
+
+    private final HazelcastInstance hazelcastInstance;
+
+    private final IMap<String, Long> generations;
+
+    private final ConcurrentMap<String, Long> ownFloor = new ConcurrentHashMap<>();
+
+    NamespaceGenerations(final HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+        this.generations = hazelcastInstance.getMap(MAP_NAME);
+    }
+
+    /**
+     * 成员和客户端都需要的近缓存配置
+     */
+    static NearCacheConfig nearCacheConfig() {
+        final NearCacheConfig nearCacheConfig = new NearCacheConfig(MAP_NAME);
+        nearCacheConfig.setInMemoryFormat(InMemoryFormat.OBJECT);
+        nearCacheConfig.setInvalidateOnChange(true);
+        return nearCacheConfig;
+    }
+
+    static MapConfig mapConfig() {
+        final MapConfig mapConfig = new MapConfig(MAP_NAME);
+        mapConfig.setNearCacheConfig(nearCacheConfig());
+        return mapConfig;
+    }
+
+    boolean isBoundTo(final HazelcastInstance instance) {
+        return hazelcastInstance == instance;
+    }
+
+    long current(final String namespace) {
+        final Long stored = generations.get(namespace);
+        final Long own = ownFloor.get(namespace);
+        return Math.max(stored == null ? 0L : stored, own == null ? 0L : own);
+    }
+
+    /**
+     * 切换到新版本, 相当于清空命名空间
+     */
+    long next(final String namespace) {
+        final long generation = generations.executeOnKey(namespace, new IncrementGeneration());
+        ownFloor.merge(namespace, generation, Math::max);
+        return generation;
+    }
+
+    /**
+     * 热重启读回磁盘上记录的版本号, 只会调高, 避免清空之前写入的旧版本条目重新可见
+     */
+    void raise(final String namespace, final long generation) {
+        generations.executeOnKey(namespace, new RaiseGeneration(generation));
+    }
+
+    private static final class RaiseGeneration implements EntryProcessor<String, Long, Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long generation;
+
+        private RaiseGeneration(final long generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public Long process(final Map.Entry<String, Long> entry) {
+            final Long current = entry.getValue();
+            if (current == null || current < generation) {
+                entry.setValue(generation);
+                return generation;
+            }
+            return current;
+        }
+    }
+
+    private static final class IncrementGeneration implements EntryProcessor<String, Long, Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Long process(final Map.Entry<String, Long> entry) {
+            final Long current = entry.getValue();
+            final long next = current == null ? 1L : current + 1;
+            entry.setValue(next);
+            return next;
+        }
+    }
+}
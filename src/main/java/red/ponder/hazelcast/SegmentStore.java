@@ -0,0 +1,171 @@
+package red.ponder.hazelcast;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一个Map在本地磁盘上的快照, 每个分区一个段文件, 只重写发生过变化的分区
+ * 段文件格式: magic(4) format(2) writtenAt(8) count(4) [keyLength(4) key valueLength(4) value expirationTime(8)]...
+ * key和value都是Hazelcast序列化后的字节
+ *
+ * @author ponder
+ */
+final class SegmentStore {
+
+    private static final int MAGIC = 0x4E435753;
+
+    private static final short FORMAT = 1;
+
+    private static final int HEADER_BYTES = 4 + 2 + 8 + 4;
+
+    private static final int ENTRY_MIN_BYTES = 4 + 4 + 8;
+
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+
+    SegmentStore(final Path directory) {
+        this.directory = directory;
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    List<Path> segments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        final List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * 先写临时文件再原子替换, 写到一半崩溃时保留上一次的段
+     */
+    void write(final int partitionId, final List<Entry> entries) throws IOException {
+        Files.createDirectories(directory);
+        final Path segment = segment(partitionId);
+        final Path temp = Files.createTempFile(directory, segment.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeShort(FORMAT);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    out.writeInt(entry.key.length);
+                    out.write(entry.key);
+                    out.writeInt(entry.value.length);
+                    out.write(entry.value);
+                    out.writeLong(entry.expirationTime);
+                }
+            }
+            Files.move(temp, segment, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    void delete(final int partitionId) throws IOException {
+        Files.deleteIfExists(segment(partitionId));
+    }
+
+    /**
+     * 通过内存映射读取一个段, 跳过已经过期的条目, 文件损坏时只返回损坏位置之前的条目
+     * 段写于notBefore之前(命名空间之后被清空过)时整段跳过
+     */
+    static List<Entry> read(final Path segment, final long now, final long notBefore) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < HEADER_BYTES) {
+                return Collections.emptyList();
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getShort() != FORMAT) {
+                return Collections.emptyList();
+            }
+            if (buffer.getLong() < notBefore) {
+                return Collections.emptyList();
+            }
+            final int count = buffer.getInt();
+            if (count < 0 || count > (size - HEADER_BYTES) / ENTRY_MIN_BYTES) {
+                return Collections.emptyList();
+            }
+            final List<Entry> entries = new ArrayList<>(count);
+            try {
+                for (int i = 0; i < count; i++) {
+                    final byte[] key = new byte[buffer.getInt()];
+                    buffer.get(key);
+                    final int valueLength = buffer.getInt();
+                    final int valueStart = buffer.position();
+                    buffer.position(valueStart + valueLength);
+                    final long expirationTime = buffer.getLong();
+                    if (expirationTime <= now) {
+                        continue;
+                    }
+                    final byte[] value = new byte[valueLength];
+                    buffer.position(valueStart);
+                    buffer.get(value);
+                    buffer.getLong();
+                    entries.add(new Entry(key, value, expirationTime));
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+                //truncated segment, keep what was readable
+            }
+            return entries;
+        }
+    }
+
+    private Path segment(final int partitionId) {
+        return directory.resolve("p-" + partitionId + SUFFIX);
+    }
+
+    static final class Entry {
+        private final byte[] key;
+
+        private final byte[] value;
+
+        /**
+         * 过期时间戳, 没有TTL时为Long.MAX_VALUE
+         */
+        private final long expirationTime;
+
+        Entry(final byte[] key, final byte[] value, final long expirationTime) {
+            this.key = key;
+            this.value = value;
+            this.expirationTime = expirationTime;
+        }
+
+        byte[] getKey() {
+            return key;
+        }
+
+        byte[] getValue() {
+            return value;
+        }
+
+        long getExpirationTime() {
+            return expirationTime;
+        }
+    }
+}
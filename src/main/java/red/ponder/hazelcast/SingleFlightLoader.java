@@ -0,0 +1,132 @@
+package red.ponder.hazelcast;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+
+import red.ponder.hazelcast.nacos.NacosDiscoveryProperties;
+
+/**
+ * 合并同一个key的并发未命中, 防止缓存过期瞬间大量请求击穿到数据库
+ * 本JVM内共享同一个Future, 集群内通过带租期的分布式锁只让一个节点加载
+ *
+ * @author ponder
+ */
+final class SingleFlightLoader {
+
+    private final HazelCache cache;
+
+    private final NacosDiscoveryProperties nacosDiscoveryProperties;
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private volatile IMap<Object, Object> leases;
+
+    /**
+     * leases所属的实例, 实例重启后重新获取
+     */
+    private volatile HazelcastInstance leasesInstance;
+
+    SingleFlightLoader(final HazelCache cache, final NacosDiscoveryProperties nacosDiscoveryProperties) {
+        this.cache = cache;
+        this.nacosDiscoveryProperties = nacosDiscoveryProperties;
+    }
+
+    Object load(final Object key, final Callable<?> loader) {
+        final Object cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return join(existing);
+        }
+        try {
+            final Object value = loadWithLease(key, loader);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            //waiters are released on an Error too, otherwise they would block forever
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 拿到租约后再查一次缓存, 其他节点可能刚刚加载完成
+     * 等待租约超时说明持有者加载过慢, 此时自行加载
+     */
+    private Object loadWithLease(final Object key, final Callable<?> loader) {
+        final Object leaseKey = cache.storeKey(key);
+        final IMap<Object, Object> leaseMap = leases();
+        boolean locked = false;
+        try {
+            locked = leaseMap.tryLock(leaseKey, nacosDiscoveryProperties.getLoaderLeaseWaitMillisOrDefault(), TimeUnit.MILLISECONDS,
+                nacosDiscoveryProperties.getLoaderLeaseMillisOrDefault(), TimeUnit.MILLISECONDS);
+            final Object cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            final long startNanos = System.nanoTime();
+            final Object value = loader.call();
+            if (value != null) {
+                cache.put(key, value, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+            }
+            return value;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for cache lease", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Cache loader failed", e);
+        } finally {
+            if (locked) {
+                unlock(leaseMap, leaseKey);
+            }
+        }
+    }
+
+    private void unlock(final IMap<Object, Object> leaseMap, final Object leaseKey) {
+        try {
+            leaseMap.unlock(leaseKey);
+        } catch (IllegalMonitorStateException e) {
+            //lease already expired
+        }
+    }
+
+    private IMap<Object, Object> leases() {
+        final HazelcastInstance instance = cache.getHazelcastInstance();
+        IMap<Object, Object> current = leases;
+        if (current == null || leasesInstance != instance) {
+            current = instance.getMap(cache.getId() + ".leases");
+            leases = current;
+            leasesInstance = instance;
+        }
+        return current;
+    }
+
+    private static Object join(final CompletableFuture<Object> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for cache loader", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Cache loader failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package red.ponder.hazelcast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.impl.HeapData;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.ExtendedMapEntry;
+import com.hazelcast.map.impl.LazyMapEntry;
+
+/**
+ * 一次提交按条目设置值和TTL, setAllAsync不能带TTL
+ * key和value保持序列化后的字节, 成员上按key的Data查找, 不需要反序列化业务对象
+ *
+ * @author ponder
+ */
+final class TimedSet implements EntryProcessor<Object, Object, Boolean> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 只写入集群中还没有的key, 检查和写入在同一次分区操作内
+     */
+    private final boolean ifAbsent;
+
+    private final List<byte[]> keys;
+
+    private final List<byte[]> values;
+
+    /**
+     * 毫秒, 0表示不过期, 负数使用Map配置的TTL
+     */
+    private final List<Long> ttls;
+
+    private transient Map<Data, Integer> index;
+
+    TimedSet(final int size, final boolean ifAbsent) {
+        this.ifAbsent = ifAbsent;
+        this.keys = new ArrayList<>(size);
+        this.values = new ArrayList<>(size);
+        this.ttls = new ArrayList<>(size);
+    }
+
+    void add(final Data key, final Data value, final long ttlMillis) {
+        keys.add(key.toByteArray());
+        values.add(value.toByteArray());
+        ttls.add(ttlMillis);
+    }
+
+    /**
+     * @return 是否写入
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Boolean process(final Map.Entry<Object, Object> entry) {
+        if (index == null) {
+            index = new HashMap<>(keys.size() * 4 / 3 + 1);
+            for (int i = 0; i < keys.size(); i++) {
+                index.put(new HeapData(keys.get(i)), i);
+            }
+        }
+        final LazyMapEntry<Object, Object> lazyEntry = (LazyMapEntry<Object, Object>) entry;
+        final Integer position = index.get(lazyEntry.getKeyData());
+        if (position == null || ifAbsent && lazyEntry.getValueData() != null) {
+            return Boolean.FALSE;
+        }
+        ((ExtendedMapEntry<Object, Object>) entry).setValue(new HeapData(values.get(position)), ttls.get(position), TimeUnit.MILLISECONDS);
+        return Boolean.TRUE;
+    }
+}
@@ -0,0 +1,78 @@
+package red.ponder.hazelcast;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.nacos.api.config.ConfigFactory;
+import com.alibaba.nacos.api.config.ConfigService;
+import com.alibaba.nacos.api.config.listener.AbstractListener;
+import com.alibaba.nacos.api.exception.NacosException;
+
+import red.ponder.hazelcast.nacos.NacosDiscoveryProperties;
+
+/**
+ * 订阅Nacos配置中心的调优配置, 每次变更解析成新版本交给HazelConfig
+ *
+ * @author ponder
+ */
+final class TuningSubscriber extends AbstractListener {
+    private static final Logger log = LoggerFactory.getLogger(TuningSubscriber.class);
+
+    private static final long INITIAL_TIMEOUT_MILLIS = 3000;
+
+    private final HazelConfig hazelConfig;
+
+    private final NacosDiscoveryProperties nacosDiscoveryProperties;
+
+    private final AtomicLong versions = new AtomicLong();
+
+    private ConfigService configService;
+
+    TuningSubscriber(final HazelConfig hazelConfig, final NacosDiscoveryProperties nacosDiscoveryProperties) {
+        this.hazelConfig = hazelConfig;
+        this.nacosDiscoveryProperties = nacosDiscoveryProperties;
+    }
+
+    /**
+     * 同步读取一次当前配置, 之后的变更由Nacos推送
+     */
+    void start() {
+        try {
+            configService = ConfigFactory.createConfigService(nacosDiscoveryProperties.getNacosClientProperties());
+            final String initial = configService.getConfigAndSignListener(nacosDiscoveryProperties.getTuningDataId(),
+                nacosDiscoveryProperties.getTuningGroupOrDefault(), INITIAL_TIMEOUT_MILLIS, this);
+            if (initial != null) {
+                receiveConfigInfo(initial);
+            }
+        } catch (NacosException e) {
+            log.warn("订阅缓存调优配置失败, 使用本地配置: {}", nacosDiscoveryProperties.getTuningDataId(), e);
+        }
+    }
+
+    @Override
+    public void receiveConfigInfo(final String configInfo) {
+        final long version = versions.incrementAndGet();
+        final CacheTuning tuning;
+        try {
+            tuning = CacheTuning.parse(version, configInfo);
+        } catch (Exception e) {
+            HazelConfig.AUDIT.warn("tuning v{} rejected: {}", version, e.getMessage());
+            return;
+        }
+        hazelConfig.applyTuning(tuning);
+    }
+
+    void stop() {
+        if (configService == null) {
+            return;
+        }
+        try {
+            configService.removeListener(nacosDiscoveryProperties.getTuningDataId(), nacosDiscoveryProperties.getTuningGroupOrDefault(), this);
+            configService.shutDown();
+        } catch (NacosException e) {
+            log.warn("关闭ConfigService异常", e);
+        }
+    }
+}
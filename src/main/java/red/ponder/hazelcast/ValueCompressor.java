@@ -0,0 +1,127 @@
+package red.ponder.hazelcast;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.internal.serialization.impl.HeapData;
+
+import red.ponder.hazelcast.metrics.CacheMetrics;
+import red.ponder.hazelcast.nacos.NacosDiscoveryProperties;
+
+/**
+ * 序列化后超过阈值的值用JDK自带的deflate压缩, Deflater和Inflater池化复用
+ * 小于阈值的值直接交出序列化结果, Hazelcast不会再序列化一次
+ *
+ * @author ponder
+ */
+final class ValueCompressor {
+
+    private final int threshold;
+
+    private final int level;
+
+    private final BlockingQueue<Deflater> deflaters;
+
+    private final BlockingQueue<Inflater> inflaters;
+
+    ValueCompressor(final NacosDiscoveryProperties nacosDiscoveryProperties) {
+        this.threshold = nacosDiscoveryProperties.getCompressionThresholdOrDefault();
+        this.level = nacosDiscoveryProperties.getCompressionLevelOrDefault();
+        final int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+        this.deflaters = new ArrayBlockingQueue<>(poolSize);
+        this.inflaters = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    /**
+     * @return 压缩后的CompressedValue, 未超过阈值或压缩后不更小时返回序列化后的Data
+     */
+    Object compress(final SerializationService serializationService, final Object value, final CacheMetrics metrics) {
+        final Data data = serializationService.toData(value);
+        final byte[] bytes = data.toByteArray();
+        if (bytes.length < threshold) {
+            return data;
+        }
+        final byte[] compressed = deflate(bytes);
+        if (compressed == null) {
+            metrics.recordCompression(bytes.length, bytes.length);
+            return data;
+        }
+        metrics.recordCompression(bytes.length, compressed.length);
+        return new CompressedValue(bytes.length, compressed);
+    }
+
+    /**
+     * 还原compress的结果, 其他值原样返回
+     */
+    Object decompress(final SerializationService serializationService, final Object stored) {
+        if (stored instanceof CompressedValue) {
+            final CompressedValue compressed = (CompressedValue) stored;
+            return serializationService.toObject(new HeapData(inflate(compressed)));
+        }
+        if (stored instanceof Data) {
+            return serializationService.toObject(stored);
+        }
+        return stored;
+    }
+
+    /**
+     * 输出不超过输入长度, 压缩后不更小时返回null
+     */
+    private byte[] deflate(final byte[] bytes) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level);
+        }
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            final byte[] buffer = new byte[bytes.length];
+            int length = 0;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return deflater.finished() && length < bytes.length ? Arrays.copyOf(buffer, length) : null;
+        } finally {
+            deflater.reset();
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    private byte[] inflate(final CompressedValue compressed) {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        try {
+            inflater.setInput(compressed.getBytes());
+            final byte[] bytes = new byte[compressed.getLength()];
+            int length = 0;
+            while (!inflater.finished() && length < bytes.length) {
+                final int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != bytes.length) {
+                throw new IllegalStateException("Corrupted compressed cache value, expected " + bytes.length + " bytes but got " + length);
+            }
+            return bytes;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted compressed cache value", e);
+        } finally {
+            inflater.reset();
+            if (!inflaters.offer(inflater)) {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package red.ponder.hazelcast;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.cluster.Member;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.EntryView;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.internal.serialization.SerializationServiceSupport;
+import com.hazelcast.internal.serialization.impl.HeapData;
+import com.hazelcast.map.IMap;
+import com.hazelcast.map.MapEvent;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryExpiredListener;
+import com.hazelcast.map.listener.MapClearedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.partition.Partition;
+import com.hazelcast.partition.PartitionService;
+import com.hazelcast.query.Predicates;
+
+/**
+ * 热重启: 定期把本节点持有的条目写到本地段文件, 重启入群后并行读回
+ * 只重写快照之后发生过变化的分区; 读回时跳过已过期的条目, 按剩余TTL写入, 集群中已有的key不覆盖
+ * 只在冷集群中读回: 集群中已有成员在服务这个Map时, 集群里的数据比磁盘新, 读回会让已删除或已清空的条目复活
+ * 各命名空间的版本号和最后清空时间另存一份, 冷启动时先恢复版本号, 并跳过最后一次清空之前写的段
+ *
+ * @author ponder
+ */
+final class WarmRestart {
+    private static final Logger log = LoggerFactory.getLogger(WarmRestart.class);
+
+    /**
+     * 集群内记录已经开始服务的Map, 有记录说明集群是热的
+     */
+    static final String SERVED_MAP_NAME = "hazelcast-nacos-warm-restart";
+
+    private static final int RESTORE_BATCH = 256;
+
+    private static final String GENERATION_PREFIX = "generation.";
+
+    private static final String CLEARED_PREFIX = "cleared.";
+
+    private final Path directory;
+
+    private final Path namespaceFile;
+
+    private final long intervalMillis;
+
+    private final ConcurrentMap<String, MapSnapshot> maps = new ConcurrentHashMap<>();
+
+    /**
+     * 集群中各命名空间的版本号
+     */
+    private final ConcurrentMap<String, Long> generations = new ConcurrentHashMap<>();
+
+    /**
+     * 各命名空间最后一次清空的时间, 之前写的段不再读回
+     */
+    private final ConcurrentMap<String, Long> clearedAt = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemon("hazelcast-nacos-warm-restart"));
+
+    /**
+     * 已经在监听版本号变化的实例, 实例重启后重新监听
+     */
+    private HazelcastInstance namespaceInstance;
+
+    WarmRestart(final Path directory, final long intervalMillis) {
+        this.directory = directory;
+        this.namespaceFile = directory.resolve("namespaces.properties");
+        this.intervalMillis = intervalMillis;
+        loadNamespaces();
+    }
+
+    /**
+     * Map首次获取时调用, 后台读回上一次的快照后开始定期快照
+     */
+    void register(final HazelcastInstance hazelcastInstance, final IMap<Object, Object> map) {
+        watchNamespaces(hazelcastInstance);
+        maps.computeIfAbsent(map.getName(), name -> {
+            final MapSnapshot snapshot = new MapSnapshot(hazelcastInstance, map, new SegmentStore(directory.resolve(encode(name))));
+            scheduler.execute(snapshot::start);
+            return snapshot;
+        });
+    }
+
+    /**
+     * 立即写一次所有Map的快照, 供停机前调用
+     */
+    void snapshotAll() {
+        for (MapSnapshot snapshot : maps.values()) {
+            snapshot.snapshot();
+        }
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 单线程调度器保证版本号先于任何Map的条目读回
+     */
+    private synchronized void watchNamespaces(final HazelcastInstance hazelcastInstance) {
+        if (namespaceInstance == hazelcastInstance) {
+            return;
+        }
+        namespaceInstance = hazelcastInstance;
+        scheduler.execute(() -> startNamespaces(hazelcastInstance));
+    }
+
+    private void startNamespaces(final HazelcastInstance hazelcastInstance) {
+        try {
+            final IMap<String, Long> cluster = hazelcastInstance.getMap(NamespaceGenerations.MAP_NAME);
+            cluster.addEntryListener((EntryAddedListener<String, Long>) this::generationChanged, true);
+            cluster.addEntryListener((EntryUpdatedListener<String, Long>) this::generationChanged, true);
+            if (isCold(hazelcastInstance, NamespaceGenerations.MAP_NAME)) {
+                final NamespaceGenerations restored = new NamespaceGenerations(hazelcastInstance);
+                for (Map.Entry<String, Long> generation : generations.entrySet()) {
+                    restored.raise(generation.getKey(), generation.getValue());
+                }
+                log.info("读回{}个命名空间的版本号", generations.size());
+            }
+            markServed(hazelcastInstance, NamespaceGenerations.MAP_NAME);
+            for (Map.Entry<String, Long> generation : cluster.entrySet()) {
+                generations.merge(generation.getKey(), generation.getValue(), Math::max);
+            }
+            storeNamespaces();
+        } catch (RuntimeException e) {
+            log.warn("热重启读回命名空间版本号失败", e);
+        }
+    }
+
+    /**
+     * 版本号变大即命名空间被清空, 立即落盘, 不等下一次快照; 读回时调高到已知值不算清空
+     */
+    private void generationChanged(final EntryEvent<String, Long> event) {
+        final Long generation = event.getValue();
+        final Long known = generations.get(event.getKey());
+        if (generation == null || known != null && known >= generation) {
+            return;
+        }
+        generations.merge(event.getKey(), generation, Math::max);
+        clearedAt.put(event.getKey(), System.currentTimeMillis());
+        storeNamespaces();
+    }
+
+    /**
+     * 集群中还没有成员开始服务这个Map
+     * 同时冷启动的成员都会读回, 各自只写入集群中没有的key
+     */
+    private static boolean isCold(final HazelcastInstance hazelcastInstance, final String name) {
+        return !hazelcastInstance.getMap(SERVED_MAP_NAME).containsKey(name);
+    }
+
+    private static void markServed(final HazelcastInstance hazelcastInstance, final String name) {
+        hazelcastInstance.getMap(SERVED_MAP_NAME).set(name, Boolean.TRUE);
+    }
+
+    private void loadNamespaces() {
+        if (!Files.isRegularFile(namespaceFile)) {
+            return;
+        }
+        final Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(namespaceFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            log.warn("读取命名空间版本号失败: {}", namespaceFile, e);
+            return;
+        }
+        for (String name : properties.stringPropertyNames()) {
+            try {
+                final long value = Long.parseLong(properties.getProperty(name));
+                if (name.startsWith(GENERATION_PREFIX)) {
+                    generations.put(name.substring(GENERATION_PREFIX.length()), value);
+                } else if (name.startsWith(CLEARED_PREFIX)) {
+                    clearedAt.put(name.substring(CLEARED_PREFIX.length()), value);
+                }
+            } catch (NumberFormatException e) {
+                log.warn("忽略无法解析的命名空间记录: {}", name);
+            }
+        }
+    }
+
+    /**
+     * 先写临时文件再原子替换
+     */
+    private synchronized void storeNamespaces() {
+        final Properties properties = new Properties();
+        for (Map.Entry<String, Long> generation : generations.entrySet()) {
+            properties.setProperty(GENERATION_PREFIX + generation.getKey(), generation.getValue().toString());
+        }
+        for (Map.Entry<String, Long> cleared : clearedAt.entrySet()) {
+            properties.setProperty(CLEARED_PREFIX + cleared.getKey(), cleared.getValue().toString());
+        }
+        try {
+            Files.createDirectories(directory);
+            final Path temp = Files.createTempFile(directory, "namespaces", ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    properties.store(out, null);
+                }
+                Files.move(temp, namespaceFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("写入命名空间版本号失败: {}", namespaceFile, e);
+        }
+    }
+
+    private static String encode(final String name) {
+        try {
+            return URLEncoder.encode(name, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class MapSnapshot implements EntryAddedListener<Object, Object>, EntryUpdatedListener<Object, Object>,
+        EntryRemovedListener<Object, Object>, EntryEvictedListener<Object, Object>, EntryExpiredListener<Object, Object> {
+
+        private final HazelcastInstance hazelcastInstance;
+
+        private final IMap<Object, Object> map;
+
+        private final SegmentStore store;
+
+        private final SerializationService serializationService;
+
+        private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+
+        /**
+         * 收到的清空次数, 读回期间变化时放弃剩余的批次
+         */
+        private final AtomicLong clears = new AtomicLong();
+
+        /**
+         * 磁盘上可能存在段文件的分区, 不再持有时删除
+         */
+        private final Set<Integer> written = ConcurrentHashMap.newKeySet();
+
+        private MapSnapshot(final HazelcastInstance hazelcastInstance, final IMap<Object, Object> map, final SegmentStore store) {
+            this.hazelcastInstance = hazelcastInstance;
+            this.map = map;
+            this.store = store;
+            this.serializationService = ((SerializationServiceSupport) hazelcastInstance).getSerializationService();
+        }
+
+        private void start() {
+            try {
+                map.addLocalEntryListener(this, Predicates.alwaysTrue(), false);
+                //clear() fires no entry events, listen cluster-wide so every member learns about it
+                map.addEntryListener((MapClearedListener) this::mapCleared, false);
+                if (isCold(hazelcastInstance, map.getName())) {
+                    restore();
+                } else {
+                    log.info("{}已经由集群中的其他成员服务, 不读回本地快照", map.getName());
+                }
+                markServed(hazelcastInstance, map.getName());
+                for (Partition partition : hazelcastInstance.getPartitionService().getPartitions()) {
+                    written.add(partition.getPartitionId());
+                    dirty.add(partition.getPartitionId());
+                }
+                scheduler.scheduleWithFixedDelay(this::snapshot, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                log.warn("热重启初始化失败: {}", map.getName(), e);
+            }
+        }
+
+        /**
+         * 每个段一个线程通过内存映射读取, 分批写回集群
+         */
+        private void restore() {
+            final List<Path> segments;
+            try {
+                segments = store.segments();
+            } catch (IOException e) {
+                log.warn("读取快照目录失败: {}", store.getDirectory(), e);
+                return;
+            }
+            if (segments.isEmpty()) {
+                return;
+            }
+            final long startNanos = System.nanoTime();
+            final long now = System.currentTimeMillis();
+            final long notBefore = clearedAt.getOrDefault(map.getName(), 0L);
+            final long clearsAtStart = clears.get();
+            final AtomicLong restored = new AtomicLong();
+            final ExecutorService loaders = Executors.newFixedThreadPool(
+                Math.min(segments.size(), Runtime.getRuntime().availableProcessors()), daemon("hazelcast-nacos-warm-loader"));
+            try {
+                final List<CompletableFuture<Void>> futures = new ArrayList<>(segments.size());
+                for (Path segment : segments) {
+                    futures.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            restored.addAndGet(restore(SegmentStore.read(segment, now, notBefore), now, clearsAtStart));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, loaders));
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            } catch (RuntimeException e) {
+                log.warn("读回快照失败: {}", map.getName(), e);
+            } finally {
+                loaders.shutdown();
+            }
+            log.info("{}从{}个段读回{}个条目, 耗时{}ms", map.getName(), segments.size(), restored.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+
+        /**
+         * 其他成员可能已经在服务, 只写入集群中还没有的key, 检查和写入在同一次分区操作内
+         * 读回期间Map被清空时放弃剩余的批次
+         */
+        private int restore(final List<SegmentStore.Entry> entries, final long now, final long clearsAtStart) {
+            int restored = 0;
+            for (int from = 0; from < entries.size(); from += RESTORE_BATCH) {
+                if (clears.get() != clearsAtStart) {
+                    log.info("{}在读回期间被清空, 放弃剩余的快照", map.getName());
+                    return restored;
+                }
+                final List<SegmentStore.Entry> batch = entries.subList(from, Math.min(entries.size(), from + RESTORE_BATCH));
+                final TimedSet processor = new TimedSet(batch.size(), true);
+                final Set<Object> keys = new HashSet<>();
+                for (SegmentStore.Entry entry : batch) {
+                    //passed as Data, the proxy sends it as it is and nothing is deserialized
+                    final Data key = new HeapData(entry.getKey());
+                    final long expirationTime = entry.getExpirationTime();
+                    //negative ttl falls back to the map default, expired entries were skipped while reading
+                    final long ttl = expirationTime == Long.MAX_VALUE ? -1 : expirationTime - now;
+                    processor.add(key, new HeapData(entry.getValue()), ttl);
+                    keys.add(key);
+                }
+                for (Boolean written : map.submitToKeys(keys, processor).toCompletableFuture().join().values()) {
+                    if (Boolean.TRUE.equals(written)) {
+                        restored++;
+                    }
+                }
+            }
+            return restored;
+        }
+
+        /**
+         * 重写本节点持有且发生过变化的分区, 删除不再持有的分区
+         */
+        private synchronized void snapshot() {
+            try {
+                final PartitionService partitionService = hazelcastInstance.getPartitionService();
+                final Member local = hazelcastInstance.getCluster().getLocalMember();
+                final Set<Integer> owned = new HashSet<>();
+                for (Partition partition : partitionService.getPartitions()) {
+                    if (local.equals(partition.getOwner())) {
+                        owned.add(partition.getPartitionId());
+                    }
+                }
+                for (Integer partitionId : written) {
+                    if (!owned.contains(partitionId)) {
+                        store.delete(partitionId);
+                        written.remove(partitionId);
+                    }
+                }
+                final Set<Integer> changed = new HashSet<>(dirty);
+                dirty.removeAll(changed);
+                changed.retainAll(owned);
+                if (changed.isEmpty()) {
+                    return;
+                }
+                final Map<Integer, List<SegmentStore.Entry>> segments = new HashMap<>();
+                for (Integer partitionId : changed) {
+                    segments.put(partitionId, new ArrayList<>());
+                }
+                for (Object key : map.localKeySet()) {
+                    final List<SegmentStore.Entry> segment = segments.get(partitionService.getPartition(key).getPartitionId());
+                    if (segment == null) {
+                        continue;
+                    }
+                    final EntryView<Object, Object> view = map.getEntryView(key);
+                    if (view != null) {
+                        segment.add(new SegmentStore.Entry(serializationService.toData(key).toByteArray(),
+                            serializationService.toData(view.getValue()).toByteArray(), view.getExpirationTime()));
+                    }
+                }
+                for (Map.Entry<Integer, List<SegmentStore.Entry>> segment : segments.entrySet()) {
+                    store.write(segment.getKey(), segment.getValue());
+                    written.add(segment.getKey());
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("写入快照失败: {}", map.getName(), e);
+            }
+        }
+
+        private void markDirty(final EntryEvent<Object, Object> event) {
+            dirty.add(hazelcastInstance.getPartitionService().getPartition(event.getKey()).getPartitionId());
+        }
+
+        @Override
+        public void entryAdded(final EntryEvent<Object, Object> event) {
+            markDirty(event);
+        }
+
+        @Override
+        public void entryUpdated(final EntryEvent<Object, Object> event) {
+            markDirty(event);
+        }
+
+        @Override
+        public void entryRemoved(final EntryEvent<Object, Object> event) {
+            markDirty(event);
+        }
+
+        @Override
+        public void entryEvicted(final EntryEvent<Object, Object> event) {
+            markDirty(event);
+        }
+
+        @Override
+        public void entryExpired(final EntryEvent<Object, Object> event) {
+            markDirty(event);
+        }
+
+        /**
+         * 记录清空时间并让所有分区在下一次快照时重写
+         */
+        private void mapCleared(final MapEvent event) {
+            clears.incrementAndGet();
+            clearedAt.put(map.getName(), System.currentTimeMillis());
+            storeNamespaces();
+            for (Partition partition : hazelcastInstance.getPartitionService().getPartitions()) {
+                dirty.add(partition.getPartitionId());
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package red.ponder.hazelcast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.internal.serialization.SerializationServiceSupport;
+import com.hazelcast.partition.PartitionService;
+
+import red.ponder.hazelcast.nacos.NacosDiscoveryProperties;
+
+/**
+ * 合并短时间内的多次写入, 按分区分组后每组一次submitToKeys, 减少网络往返, 每个条目保留自己的TTL
+ * 队列有界, 满了以后调用方直接同步写入, 内存不会无限增长
+ * 写入完成前由HazelCache的本地覆盖层提供读己之写
+ *
+ * @author ponder
+ */
+final class WriteCoalescer {
+    private static final Logger log = LoggerFactory.getLogger(WriteCoalescer.class);
+
+    private static final long CLEAR_WAIT_MILLIS = 5000;
+
+    private final BlockingQueue<PendingWrite> queue;
+
+    private final int batchSize;
+
+    private final long delayNanos;
+
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    /**
+     * 每个缓存已经发出的批次, clear()等它们完成后再清空IMap
+     */
+    private final Map<HazelCache, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    WriteCoalescer(final NacosDiscoveryProperties nacosDiscoveryProperties) {
+        this.queue = new ArrayBlockingQueue<>(nacosDiscoveryProperties.getWriteCoalesceQueueOrDefault());
+        this.batchSize = nacosDiscoveryProperties.getWriteCoalesceBatchOrDefault();
+        this.delayNanos = TimeUnit.MICROSECONDS.toNanos(nacosDiscoveryProperties.getWriteCoalesceDelayMicrosOrDefault());
+        this.flusher = new Thread(this::run, "hazelcast-nacos-write-coalescer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * @return 队列已满或已经停止时返回false, 调用方自行同步写入
+     */
+    boolean offer(final PendingWrite write) {
+        if (!running || !queue.offer(write)) {
+            return false;
+        }
+        //closed meanwhile and the flusher may be gone already: take the write back unless it was picked up
+        return running || !queue.remove(write);
+    }
+
+    /**
+     * 停止后先写完队列中剩余的内容, 再等待已发出的批次完成
+     */
+    private void run() {
+        final List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            boolean interrupted = false;
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            //the batch already taken off the queue is written even when close() gave up waiting
+            flushQuietly(batch);
+            batch.clear();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        final List<CompletableFuture<Void>> sent = new ArrayList<>();
+        for (InFlight batches : inFlight.values()) {
+            sent.addAll(batches.futures);
+        }
+        await(sent);
+    }
+
+    private void collect(final List<PendingWrite> batch) throws InterruptedException {
+        final PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        final long deadline = System.nanoTime() + delayNanos;
+        while (batch.size() < batchSize) {
+            final long remaining = deadline - System.nanoTime();
+            final PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                queue.drainTo(batch, batchSize - batch.size());
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flushQuietly(final List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            flush(batch);
+        } catch (RuntimeException e) {
+            log.warn("合并写入失败", e);
+        }
+    }
+
+    /**
+     * 同一批内同一个key只保留最后一次写入
+     * 检查取消和登记发出的批次在同一把锁内, clear()拿到这把锁之后看到的就是所有可能写入的批次
+     */
+    private void flush(final List<PendingWrite> batch) {
+        final Map<HazelCache, List<PendingWrite>> byCache = new IdentityHashMap<>();
+        for (PendingWrite write : batch) {
+            byCache.computeIfAbsent(write.cache, cache -> new ArrayList<>()).add(write);
+        }
+        for (Map.Entry<HazelCache, List<PendingWrite>> writes : byCache.entrySet()) {
+            final HazelCache cache = writes.getKey();
+            final InFlight batches = inFlight(cache);
+            synchronized (batches) {
+                for (Map<Object, PendingWrite> group : groupByPartition(cache, writes.getValue()).values()) {
+                    batches.add(send(cache, group));
+                }
+            }
+        }
+    }
+
+    private static Map<Integer, Map<Object, PendingWrite>> groupByPartition(final HazelCache cache, final List<PendingWrite> writes) {
+        final PartitionService partitionService = cache.getHazelcastInstance().getPartitionService();
+        final Map<Integer, Map<Object, PendingWrite>> grouped = new HashMap<>();
+        for (PendingWrite write : writes) {
+            if (write.cancelled) {
+                cache.writeCompleted(write, null);
+                continue;
+            }
+            final int partitionId = partitionService.getPartition(write.storeKey).getPartitionId();
+            final PendingWrite replaced = grouped.computeIfAbsent(partitionId, id -> new LinkedHashMap<>()).put(write.storeKey, write);
+            if (replaced != null) {
+                cache.writeCompleted(replaced, null);
+            }
+        }
+        return grouped;
+    }
+
+    /**
+     * 一个分区的写入合成一次submitToKeys, 每个条目带上自己的TTL(含随机抖动和调优下发的TTL)
+     */
+    private static CompletableFuture<Void> send(final HazelCache cache, final Map<Object, PendingWrite> group) {
+        final SerializationService serializationService = ((SerializationServiceSupport) cache.getHazelcastInstance()).getSerializationService();
+        final TimedSet processor = new TimedSet(group.size(), false);
+        for (PendingWrite write : group.values()) {
+            //keeps 0 (no expiry) and negative (map default) as they are
+            final long ttlMillis = TimeUnit.SECONDS.toMillis(write.ttlSeconds);
+            processor.add(serializationService.toData(write.storeKey), serializationService.toData(write.value), ttlMillis);
+        }
+        return cache.getMap().submitToKeys(group.keySet(), processor).toCompletableFuture().<Void>thenApply(ignored -> null)
+            .whenComplete((ignored, e) -> {
+                if (e != null) {
+                    log.warn("合并写入{}个条目到{}失败", group.size(), cache.getId(), e);
+                }
+                for (PendingWrite write : group.values()) {
+                    cache.writeCompleted(write, e);
+                }
+            });
+    }
+
+    private InFlight inFlight(final HazelCache cache) {
+        return inFlight.computeIfAbsent(cache, key -> new InFlight());
+    }
+
+    /**
+     * 等待这个缓存已经发出的批次完成, 调用前先取消尚未发出的写入, 之后清空IMap不会被旧的批次写回
+     */
+    void awaitInFlight(final HazelCache cache) {
+        final InFlight batches = inFlight(cache);
+        final List<CompletableFuture<Void>> sent;
+        synchronized (batches) {
+            sent = new ArrayList<>(batches.futures);
+        }
+        if (!await(sent, CLEAR_WAIT_MILLIS)) {
+            log.warn("{}清空前{}ms内仍有合并写入未完成", cache.getId(), CLEAR_WAIT_MILLIS);
+        }
+    }
+
+    private static void await(final List<CompletableFuture<Void>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            //failed batches were logged when they completed
+        }
+    }
+
+    /**
+     * @return 是否在超时之前全部完成, 失败也算完成
+     */
+    private static boolean await(final List<CompletableFuture<Void>> futures, final long timeoutMillis) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            //failed batches were logged when they completed
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 停止合并, 由写出线程写完队列中剩余的内容和手中的批次并等待完成, 超时后中断
+     */
+    void close(final long timeoutMillis) {
+        running = false;
+        try {
+            flusher.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            log.warn("停机时{}ms内未写完合并写入, 队列中还有{}个", timeoutMillis, queue.size());
+            flusher.interrupt();
+        }
+    }
+
+    /**
+     * 一个缓存已经发出但尚未完成的批次
+     */
+    private static final class InFlight {
+        private final Set<CompletableFuture<Void>> futures = ConcurrentHashMap.newKeySet();
+
+        private void add(final CompletableFuture<Void> future) {
+            futures.add(future);
+            future.whenComplete((ignored, e) -> futures.remove(future));
+        }
+    }
+
+    static final class PendingWrite {
+        private final HazelCache cache;
+
+        private final Object key;
+
+        private final Object storeKey;
+
+        private final Object value;
+
+        /**
+         * 写入时算好的TTL, 同步写入时同样使用这个值
+         */
+        private final long ttlSeconds;
+
+        private volatile boolean cancelled;
+
+        PendingWrite(final HazelCache cache, final Object key, final Object storeKey, final Object value, final long ttlSeconds) {
+            this.cache = cache;
+            this.key = key;
+            this.storeKey = storeKey;
+            this.value = value;
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        Object getKey() {
+            return key;
+        }
+
+        Object getValue() {
+            return value;
+        }
+
+        /**
+         * 被remove/clear取代, 尚未发出时不再写入
+         */
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
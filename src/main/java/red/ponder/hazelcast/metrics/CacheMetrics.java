@@ -0,0 +1,258 @@
+package red.ponder.hazelcast.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.hazelcast.internal.metrics.Probe;
+import com.hazelcast.nearcache.NearCacheStats;
+
+/**
+ * 单个缓存Map的命中率和读写延迟, 近缓存统计直接读取Hazelcast自身的计数
+ *
+ * @author ponder
+ */
+public final class CacheMetrics implements CacheMetricsMBean {
+
+    private final String name;
+
+    private final Supplier<NearCacheStats> nearCacheStats;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder l1Hits = new LongAdder();
+
+    /**
+     * 按加载成本淘汰的Map: 写入条目的加载耗时之和, 以及命中条目省下的加载耗时之和
+     */
+    private final LongAdder loadMicros = new LongAdder();
+
+    private final LongAdder savedLoadMicros = new LongAdder();
+
+    /**
+     * 开启压缩的Map: 超过阈值的写入次数, 以及这些值压缩前后的字节数
+     */
+    private final LongAdder compressedWrites = new LongAdder();
+
+    private final LongAdder compressionOriginalBytes = new LongAdder();
+
+    private final LongAdder compressionStoredBytes = new LongAdder();
+
+    private final LatencyHistogram get = new LatencyHistogram();
+
+    private final LatencyHistogram put = new LatencyHistogram();
+
+    /**
+     * @param nearCacheStats 未开启近缓存时返回null
+     */
+    public CacheMetrics(final String name, final Supplier<NearCacheStats> nearCacheStats) {
+        this.name = name;
+        this.nearCacheStats = nearCacheStats;
+        MetricsJmx.register(this, "CacheMetrics", name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param startNanos 开始读取时的{@link System#nanoTime()}
+     */
+    public void recordGet(final long startNanos, final boolean hit) {
+        get.recordSince(startNanos);
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    /**
+     * 一级缓存命中只计数, 不计时, 保持命中路径足够短
+     */
+    public void recordL1Hit() {
+        l1Hits.increment();
+        hits.increment();
+    }
+
+    public void recordPut(final long startNanos) {
+        put.recordSince(startNanos);
+    }
+
+    public void recordLoad(final long micros) {
+        loadMicros.add(micros);
+    }
+
+    /**
+     * 一级缓存只保存原始值, 其命中不计入
+     */
+    public void recordSavedLoad(final long micros) {
+        savedLoadMicros.add(micros);
+    }
+
+    /**
+     * @param storedBytes 压缩后不更小时等于originalBytes
+     */
+    public void recordCompression(final int originalBytes, final int storedBytes) {
+        compressedWrites.increment();
+        compressionOriginalBytes.add(originalBytes);
+        compressionStoredBytes.add(storedBytes);
+    }
+
+    @Probe(name = "hits")
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Probe(name = "misses")
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Probe(name = "l1Hits")
+    @Override
+    public long getL1Hits() {
+        return l1Hits.sum();
+    }
+
+    @Probe(name = "hitRatio")
+    @Override
+    public double getHitRatio() {
+        return ratio(getHits(), getMisses());
+    }
+
+    @Probe(name = "getP50Micros")
+    @Override
+    public long getGetP50Micros() {
+        return get.getPercentileMicros(50);
+    }
+
+    @Probe(name = "getP99Micros")
+    @Override
+    public long getGetP99Micros() {
+        return get.getPercentileMicros(99);
+    }
+
+    @Probe(name = "getP999Micros")
+    @Override
+    public long getGetP999Micros() {
+        return get.getPercentileMicros(99.9);
+    }
+
+    @Probe(name = "getMaxMicros")
+    @Override
+    public long getGetMaxMicros() {
+        return get.getMaxMicros();
+    }
+
+    @Probe(name = "puts")
+    @Override
+    public long getPuts() {
+        return put.getCount();
+    }
+
+    @Probe(name = "putP50Micros")
+    @Override
+    public long getPutP50Micros() {
+        return put.getPercentileMicros(50);
+    }
+
+    @Probe(name = "putP99Micros")
+    @Override
+    public long getPutP99Micros() {
+        return put.getPercentileMicros(99);
+    }
+
+    @Probe(name = "putMaxMicros")
+    @Override
+    public long getPutMaxMicros() {
+        return put.getMaxMicros();
+    }
+
+    @Probe(name = "loadMicros")
+    @Override
+    public long getLoadMicros() {
+        return loadMicros.sum();
+    }
+
+    @Probe(name = "savedLoadMicros")
+    @Override
+    public long getSavedLoadMicros() {
+        return savedLoadMicros.sum();
+    }
+
+    /**
+     * 按数据库耗时加权的命中率
+     */
+    @Probe(name = "loadTimeHitRatio")
+    @Override
+    public double getLoadTimeHitRatio() {
+        return ratio(getSavedLoadMicros(), getLoadMicros());
+    }
+
+    @Probe(name = "compressedWrites")
+    @Override
+    public long getCompressedWrites() {
+        return compressedWrites.sum();
+    }
+
+    @Probe(name = "compressionOriginalBytes")
+    @Override
+    public long getCompressionOriginalBytes() {
+        return compressionOriginalBytes.sum();
+    }
+
+    @Probe(name = "compressionStoredBytes")
+    @Override
+    public long getCompressionStoredBytes() {
+        return compressionStoredBytes.sum();
+    }
+
+    /**
+     * 压缩后字节数占压缩前的比例, 越小越好, 没有超过阈值的写入时为0
+     */
+    @Probe(name = "compressionRatio")
+    @Override
+    public double getCompressionRatio() {
+        final long original = getCompressionOriginalBytes();
+        return original == 0 ? 0 : (double) getCompressionStoredBytes() / original;
+    }
+
+    @Probe(name = "nearCacheHits")
+    @Override
+    public long getNearCacheHits() {
+        final NearCacheStats stats = nearCacheStats();
+        return stats == null ? 0 : stats.getHits();
+    }
+
+    @Probe(name = "nearCacheMisses")
+    @Override
+    public long getNearCacheMisses() {
+        final NearCacheStats stats = nearCacheStats();
+        return stats == null ? 0 : stats.getMisses();
+    }
+
+    @Probe(name = "nearCacheHitRatio")
+    @Override
+    public double getNearCacheHitRatio() {
+        final NearCacheStats stats = nearCacheStats();
+        return stats == null ? 0 : ratio(stats.getHits(), stats.getMisses());
+    }
+
+    private NearCacheStats nearCacheStats() {
+        try {
+            return nearCacheStats.get();
+        } catch (RuntimeException e) {
+            //instance not started yet or already shut down
+            return null;
+        }
+    }
+
+    private static double ratio(final long hits, final long misses) {
+        final long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
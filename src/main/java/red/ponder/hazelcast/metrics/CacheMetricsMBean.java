@@ -0,0 +1,53 @@
+package red.ponder.hazelcast.metrics;
+
+/**
+ * 单个缓存Map指标的JMX视图, 延迟单位为微秒
+ *
+ * @author ponder
+ */
+public interface CacheMetricsMBean {
+
+    long getHits();
+
+    long getMisses();
+
+    long getL1Hits();
+
+    double getHitRatio();
+
+    long getGetP50Micros();
+
+    long getGetP99Micros();
+
+    long getGetP999Micros();
+
+    long getGetMaxMicros();
+
+    long getPuts();
+
+    long getPutP50Micros();
+
+    long getPutP99Micros();
+
+    long getPutMaxMicros();
+
+    long getLoadMicros();
+
+    long getSavedLoadMicros();
+
+    double getLoadTimeHitRatio();
+
+    long getCompressedWrites();
+
+    long getCompressionOriginalBytes();
+
+    long getCompressionStoredBytes();
+
+    double getCompressionRatio();
+
+    long getNearCacheHits();
+
+    long getNearCacheMisses();
+
+    double getNearCacheHitRatio();
+}
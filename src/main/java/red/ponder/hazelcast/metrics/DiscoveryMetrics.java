@@ -0,0 +1,196 @@
+package red.ponder.hazelcast.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.hazelcast.internal.metrics.Probe;
+
+/**
+ * 一个Nacos服务的发现指标, 发现策略在Hazelcast启动线程内创建, 因此按服务名全局共享
+ *
+ * @author ponder
+ */
+public final class DiscoveryMetrics implements DiscoveryMetricsMBean {
+
+    private static final ConcurrentMap<String, DiscoveryMetrics> BY_SERVICE = new ConcurrentHashMap<>();
+
+    private final String serviceName;
+
+    /**
+     * getAllInstances/selectInstances
+     */
+    private final LatencyHistogram query = new LatencyHistogram();
+
+    private final LatencyHistogram register = new LatencyHistogram();
+
+    private final LatencyHistogram deregister = new LatencyHistogram();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder membershipChanges = new LongAdder();
+
+    private final LongAdder membersJoined = new LongAdder();
+
+    private final LongAdder membersLeft = new LongAdder();
+
+    private volatile long discoveredMembers;
+
+    private volatile long startToJoinMillis = -1;
+
+    private DiscoveryMetrics(final String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    public static DiscoveryMetrics of(final String serviceName) {
+        final DiscoveryMetrics metrics = BY_SERVICE.get(serviceName);
+        if (metrics != null) {
+            return metrics;
+        }
+        return BY_SERVICE.computeIfAbsent(serviceName, name -> {
+            final DiscoveryMetrics created = new DiscoveryMetrics(name);
+            MetricsJmx.register(created, "DiscoveryMetrics", name);
+            return created;
+        });
+    }
+
+    static Collection<DiscoveryMetrics> all() {
+        return Collections.unmodifiableCollection(BY_SERVICE.values());
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public LatencyHistogram query() {
+        return query;
+    }
+
+    public LatencyHistogram register() {
+        return register;
+    }
+
+    public LatencyHistogram deregister() {
+        return deregister;
+    }
+
+    public void recordFailure() {
+        failures.increment();
+    }
+
+    public void recordDiscovered(final int members) {
+        discoveredMembers = members;
+    }
+
+    public void recordChurn(final int joined, final int left) {
+        membershipChanges.increment();
+        membersJoined.add(joined);
+        membersLeft.add(left);
+    }
+
+    /**
+     * @param startNanos 发现策略启动时的{@link System#nanoTime()}
+     */
+    public void recordJoined(final long startNanos) {
+        startToJoinMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Probe(name = "queryCount")
+    @Override
+    public long getQueryCount() {
+        return query.getCount();
+    }
+
+    @Probe(name = "queryP50Micros")
+    @Override
+    public long getQueryP50Micros() {
+        return query.getPercentileMicros(50);
+    }
+
+    @Probe(name = "queryP99Micros")
+    @Override
+    public long getQueryP99Micros() {
+        return query.getPercentileMicros(99);
+    }
+
+    @Probe(name = "queryMaxMicros")
+    @Override
+    public long getQueryMaxMicros() {
+        return query.getMaxMicros();
+    }
+
+    @Probe(name = "registerCount")
+    @Override
+    public long getRegisterCount() {
+        return register.getCount();
+    }
+
+    @Probe(name = "registerP99Micros")
+    @Override
+    public long getRegisterP99Micros() {
+        return register.getPercentileMicros(99);
+    }
+
+    @Probe(name = "registerMaxMicros")
+    @Override
+    public long getRegisterMaxMicros() {
+        return register.getMaxMicros();
+    }
+
+    @Probe(name = "deregisterCount")
+    @Override
+    public long getDeregisterCount() {
+        return deregister.getCount();
+    }
+
+    @Probe(name = "deregisterP99Micros")
+    @Override
+    public long getDeregisterP99Micros() {
+        return deregister.getPercentileMicros(99);
+    }
+
+    @Probe(name = "deregisterMaxMicros")
+    @Override
+    public long getDeregisterMaxMicros() {
+        return deregister.getMaxMicros();
+    }
+
+    @Probe(name = "failures")
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Probe(name = "discoveredMembers")
+    @Override
+    public long getDiscoveredMembers() {
+        return discoveredMembers;
+    }
+
+    @Probe(name = "membershipChanges")
+    @Override
+    public long getMembershipChanges() {
+        return membershipChanges.sum();
+    }
+
+    @Probe(name = "membersJoined")
+    @Override
+    public long getMembersJoined() {
+        return membersJoined.sum();
+    }
+
+    @Probe(name = "membersLeft")
+    @Override
+    public long getMembersLeft() {
+        return membersLeft.sum();
+    }
+
+    @Probe(name = "startToJoinMillis")
+    @Override
+    public long getStartToJoinMillis() {
+        return startToJoinMillis;
+    }
+}
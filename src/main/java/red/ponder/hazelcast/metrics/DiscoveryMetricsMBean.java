@@ -0,0 +1,41 @@
+package red.ponder.hazelcast.metrics;
+
+/**
+ * Nacos发现指标的JMX视图, 延迟单位为微秒
+ *
+ * @author ponder
+ */
+public interface DiscoveryMetricsMBean {
+
+    long getQueryCount();
+
+    long getQueryP50Micros();
+
+    long getQueryP99Micros();
+
+    long getQueryMaxMicros();
+
+    long getRegisterCount();
+
+    long getRegisterP99Micros();
+
+    long getRegisterMaxMicros();
+
+    long getDeregisterCount();
+
+    long getDeregisterP99Micros();
+
+    long getDeregisterMaxMicros();
+
+    long getFailures();
+
+    long getDiscoveredMembers();
+
+    long getMembershipChanges();
+
+    long getMembersJoined();
+
+    long getMembersLeft();
+
+    long getStartToJoinMillis();
+}
@@ -0,0 +1,71 @@
+package red.ponder.hazelcast.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.client.impl.clientside.HazelcastClientProxy;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.instance.impl.HazelcastInstanceImpl;
+import com.hazelcast.instance.impl.HazelcastInstanceProxy;
+import com.hazelcast.internal.metrics.DynamicMetricsProvider;
+import com.hazelcast.internal.metrics.MetricDescriptor;
+import com.hazelcast.internal.metrics.MetricsCollectionContext;
+import com.hazelcast.internal.metrics.MetricsRegistry;
+
+/**
+ * 把发现和缓存指标挂到Hazelcast自身的指标系统, 随Management Center/JMX/诊断日志一起采集
+ * 指标前缀为nacos.discovery和nacos.cache, 分别以service和map区分
+ *
+ * @author ponder
+ */
+public final class HazelcastMetrics implements DynamicMetricsProvider {
+    private static final Logger log = LoggerFactory.getLogger(HazelcastMetrics.class);
+
+    private final ConcurrentMap<String, CacheMetrics> caches = new ConcurrentHashMap<>();
+
+    public void register(final CacheMetrics metrics) {
+        caches.put(metrics.getName(), metrics);
+    }
+
+    /**
+     * 实例启动或重启后调用, 使用的是Hazelcast内部API, 取不到注册表时只保留JMX
+     */
+    public void attach(final HazelcastInstance instance) {
+        try {
+            final MetricsRegistry registry = metricsRegistry(instance);
+            if (registry == null) {
+                log.warn("无法获取{}的指标注册表, 只通过JMX暴露指标", instance.getClass().getName());
+                return;
+            }
+            registry.registerDynamicMetricsProvider(this);
+        } catch (RuntimeException e) {
+            log.warn("注册Hazelcast指标失败, 只通过JMX暴露指标", e);
+        }
+    }
+
+    private static MetricsRegistry metricsRegistry(final HazelcastInstance instance) {
+        if (instance instanceof HazelcastInstanceProxy) {
+            return ((HazelcastInstanceProxy) instance).getOriginal().node.getNodeEngine().getMetricsRegistry();
+        }
+        if (instance instanceof HazelcastInstanceImpl) {
+            return ((HazelcastInstanceImpl) instance).node.getNodeEngine().getMetricsRegistry();
+        }
+        if (instance instanceof HazelcastClientProxy) {
+            return ((HazelcastClientProxy) instance).client.getMetricsRegistry();
+        }
+        return null;
+    }
+
+    @Override
+    public void provideDynamicMetrics(final MetricDescriptor descriptor, final MetricsCollectionContext context) {
+        for (DiscoveryMetrics metrics : DiscoveryMetrics.all()) {
+            context.collect(descriptor.copy().withPrefix("nacos.discovery").withDiscriminator("service", metrics.getServiceName()), metrics);
+        }
+        for (CacheMetrics metrics : caches.values()) {
+            context.collect(descriptor.copy().withPrefix("nacos.cache").withDiscriminator("map", metrics.getName()), metrics);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package red.ponder.hazelcast.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 注册到平台MBeanServer, 同名MBean已存在时替换
+ *
+ * @author ponder
+ */
+final class MetricsJmx {
+    private static final Logger log = LoggerFactory.getLogger(MetricsJmx.class);
+
+    private static final String DOMAIN = "red.ponder.hazelcast";
+
+    private MetricsJmx() {
+    }
+
+    static void register(final Object mbean, final String type, final String name) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (JMException | SecurityException e) {
+            log.warn("注册JMX指标失败: {} {}", type, name, e);
+        }
+    }
+}
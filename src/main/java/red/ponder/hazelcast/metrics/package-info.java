@@ -0,0 +1,9 @@
+/**
+ * @type package-info.java.
+ * @desc 发现和缓存热点路径的指标, 同时暴露到Hazelcast指标系统和JMX
+ * @author Ponder
+ * @date 2023/3/10 16:12
+ * @version
+ */
+
+package red.ponder.hazelcast.metrics;
@@ -0,0 +1,301 @@
+package red.ponder.hazelcast.mybatis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.ibatis.cache.CacheKey;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+
+/**
+ * CacheKey序列化为定长16字节的128位哈希, 不再传输完整的SQL和参数
+ * Java序列化的CacheKey包含类描述和整个updateList, 通常有数百字节到数KB
+ * Hazelcast按序列化后的字节比较key, 所以哈希相同即视为同一个key
+ * 哈希的输入是updateList各组成部分带类型和长度的规范编码, 不是CacheKey.toString():
+ * 不同的key不会因为拼接后的字符串相同而冲突; 组成部分不是值类型(例如toString带identity hash的参数对象)时
+ * 改为只对updateList各组成部分做Java序列化, 不包含CacheKey按hashCode算出的hashcode/checksum字段,
+ * 组成部分的序列化结果确定(各节点类版本相同, 不含遍历顺序不定的HashSet/HashMap等)时不同JVM之间能匹配,
+ * 否则只会未命中多查一次库, 不会命中错误的值; 组成部分不可序列化时退回toString哈希, 同样只会未命中
+ *
+ * @author ponder
+ */
+public final class CacheKeySerializer implements StreamSerializer<CacheKey> {
+
+    public static final int TYPE_ID = 1002;
+
+    private static final byte HASHED = 0;
+
+    private static final byte FULL = 1;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final Field UPDATE_LIST = updateListField();
+
+    @Override
+    public void write(final ObjectDataOutput out, final CacheKey key) throws IOException {
+        if (key instanceof HashedCacheKey) {
+            out.writeByte(HASHED);
+            out.writeLong(((HashedCacheKey) key).getHigh());
+            out.writeLong(((HashedCacheKey) key).getLow());
+            return;
+        }
+        final List<?> components = components(key);
+        final String canonical = components != null ? canonical(components) : null;
+        if (components != null && canonical == null) {
+            final byte[] full = serialize(components);
+            if (full != null) {
+                out.writeByte(FULL);
+                out.writeByteArray(full);
+                return;
+            }
+        }
+        //not serializable either: such keys cannot match across JVMs anyway, keep the old string hash and just miss
+        final long[] hash = hash(canonical != null ? canonical : key.toString());
+        out.writeByte(HASHED);
+        out.writeLong(hash[0]);
+        out.writeLong(hash[1]);
+    }
+
+    /**
+     * updateList的规范编码, 含有非值类型的组成部分或无法读取updateList时返回null
+     */
+    private static String canonical(final List<?> components) {
+        final StringBuilder builder = new StringBuilder(256);
+        for (Object component : components) {
+            if (!append(builder, component)) {
+                return null;
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 每个值写成 类型;长度:内容, 集合和数组写成 类型;元素个数 后跟各元素
+     */
+    private static boolean append(final StringBuilder builder, final Object value) {
+        if (value == null) {
+            builder.append('N');
+            return true;
+        }
+        final Class<?> type = value.getClass();
+        if (value instanceof Collection) {
+            builder.append('C').append(type.getName()).append(';').append(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value) {
+                if (!append(builder, element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (type.isArray()) {
+            final int length = Array.getLength(value);
+            builder.append('A').append(type.getName()).append(';').append(length);
+            for (int i = 0; i < length; i++) {
+                if (!append(builder, Array.get(value, i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        final String text;
+        if (value instanceof Enum) {
+            text = ((Enum<?>) value).name();
+        } else if (value instanceof Timestamp) {
+            text = ((Timestamp) value).getTime() + "." + ((Timestamp) value).getNanos();
+        } else if (value instanceof Date) {
+            text = Long.toString(((Date) value).getTime());
+        } else if (isValueType(type)) {
+            text = value.toString();
+        } else {
+            return false;
+        }
+        builder.append('V').append(type.getName()).append(';').append(text.length()).append(':').append(text);
+        return true;
+    }
+
+    private static boolean isValueType(final Class<?> type) {
+        return type == String.class || type == Boolean.class || type == Character.class || type == UUID.class
+            || Number.class.isAssignableFrom(type) && type.getName().startsWith("java.")
+            || type.getName().startsWith("java.time.");
+    }
+
+    /**
+     * CacheKey的updateList, 无法读取时返回null
+     */
+    private static List<?> components(final CacheKey key) {
+        if (UPDATE_LIST == null) {
+            return null;
+        }
+        try {
+            return (List<?>) UPDATE_LIST.get(key);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 只序列化updateList的组成部分, 不含随JVM变化的hashcode/checksum
+     */
+    private static byte[] serialize(final List<?> components) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(components.toArray());
+        } catch (NotSerializableException e) {
+            return null;
+        }
+        return buffer.toByteArray();
+    }
+
+    private static Field updateListField() {
+        try {
+            final Field field = CacheKey.class.getDeclaredField("updateList");
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * MurmurHash3 x64 128, 直接按字符计算, 不生成中间byte[]
+     */
+    static long[] hash(final String text) {
+        final int length = text.length();
+        long h1 = 0;
+        long h2 = 0;
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            final long k1 = pack(text, i);
+            final long k2 = pack(text, i + 4);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        long k1 = 0;
+        long k2 = 0;
+        for (int j = 0; i + j < length; j++) {
+            final long c = text.charAt(i + j);
+            if (j < 4) {
+                k1 |= c << (16 * j);
+            } else {
+                k2 |= c << (16 * (j - 4));
+            }
+        }
+        h1 ^= mixK1(k1);
+        h2 ^= mixK2(k2);
+
+        h1 ^= length * 2L;
+        h2 ^= length * 2L;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[]{h1, h2};
+    }
+
+    @Override
+    public CacheKey read(final ObjectDataInput in) throws IOException {
+        if (in.readByte() == FULL) {
+            return deserialize(in.readByteArray(), in.getClassLoader());
+        }
+        final long high = in.readLong();
+        return new HashedCacheKey(high, in.readLong());
+    }
+
+    private static CacheKey deserialize(final byte[] bytes, final ClassLoader classLoader) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                if (classLoader == null) {
+                    return super.resolveClass(desc);
+                }
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    return super.resolveClass(desc);
+                }
+            }
+        }) {
+            return new CacheKey((Object[]) in.readObject());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Cannot deserialize CacheKey", e);
+        }
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+
+    private static long pack(final String text, final int offset) {
+        return (long) text.charAt(offset)
+            | (long) text.charAt(offset + 1) << 16
+            | (long) text.charAt(offset + 2) << 32
+            | (long) text.charAt(offset + 3) << 48;
+    }
+
+    private static long mixK1(final long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(final long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix(final long value) {
+        long k = value;
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * 反序列化得到的key只保留哈希, 再次序列化时原样写回
+     */
+    static final class HashedCacheKey extends CacheKey {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long high;
+
+        private final long low;
+
+        HashedCacheKey(final long high, final long low) {
+            super(new Object[]{high, low});
+            this.high = high;
+            this.low = low;
+        }
+
+        long getHigh() {
+            return high;
+        }
+
+        long getLow() {
+            return low;
+        }
+    }
+}
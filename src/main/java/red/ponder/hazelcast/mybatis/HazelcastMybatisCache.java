@@ -0,0 +1,100 @@
+package red.ponder.hazelcast.mybatis;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+
+import red.ponder.hazelcast.HazelCache;
+import red.ponder.hazelcast.HazelConfig;
+import red.ponder.hazelcast.utils.SpringUtil;
+
+/**
+ * MyBatis二级缓存, 每个Mapper命名空间对应一个IMap
+ * 使用方式: {@code @CacheNamespace(implementation = HazelcastMybatisCache.class)}
+ *
+ * @author ponder
+ */
+public final class HazelcastMybatisCache implements Cache {
+
+    private final String id;
+
+    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+
+    private volatile HazelCache cache;
+
+    public HazelcastMybatisCache(final String id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Hazelcast Cache instances require an ID");
+        }
+        this.id = id;
+    }
+
+    HazelcastMybatisCache(final String id, final HazelCache cache) {
+        this(id);
+        this.cache = cache;
+    }
+
+    /**
+     * MyBatis解析Mapper时就会创建Cache, 此时不启动Hazelcast, 第一次读写时再获取
+     */
+    private HazelCache cache() {
+        HazelCache current = cache;
+        if (current == null) {
+            current = SpringUtil.getBean(HazelConfig.class).getCache(id);
+            cache = current;
+        }
+        return current;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void putObject(final Object key, final Object value) {
+        cache().put(key, value);
+    }
+
+    @Override
+    public Object getObject(final Object key) {
+        return cache().get(key);
+    }
+
+    @Override
+    public Object removeObject(final Object key) {
+        return cache().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        cache().clear();
+    }
+
+    @Override
+    public int getSize() {
+        return cache().getLocalSize();
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return readWriteLock;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cache)) {
+            return false;
+        }
+        return id.equals(((Cache) o).getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+}
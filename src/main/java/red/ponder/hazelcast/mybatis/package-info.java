@@ -0,0 +1,9 @@
+/**
+ * @type package-info.java.
+ * @desc MyBatis二级缓存实现, 需要项目自行引入mybatis依赖
+ * @author Ponder
+ * @date 2023/3/10 16:12
+ * @version
+ */
+
+package red.ponder.hazelcast.mybatis;
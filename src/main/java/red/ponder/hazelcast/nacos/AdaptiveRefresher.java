@@ -0,0 +1,142 @@
+package red.ponder.hazelcast.nacos;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.hazelcast.logging.ILogger;
+
+/**
+ * ADAPTIVE模式下由策略自己调度向Nacos拉取成员
+ * 成员变化时使用最短间隔, 稳定后指数退避到最长间隔, 每次间隔加随机抖动, 避免整个集群同时请求Nacos
+ * 连续失败达到阈值后熔断, 熔断期间不请求Nacos, 直接使用已有快照
+ *
+ * @author ponder
+ */
+final class AdaptiveRefresher {
+
+    private final NacosDiscoveryProperties nacosDiscoveryProperties;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Callable<Boolean> refresh;
+
+    private final ILogger logger;
+
+    private final LongAdder nacosCalls = new LongAdder();
+
+    private final LongAdder savedCalls = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder rejectedByBreaker = new LongAdder();
+
+    private long intervalMillis;
+
+    private int consecutiveFailures;
+
+    private long openMillis;
+
+    private long openUntil;
+
+    private volatile boolean stopped;
+
+    /**
+     * @param refresh 拉取一次成员列表, 返回成员是否发生变化
+     */
+    AdaptiveRefresher(final NacosDiscoveryProperties nacosDiscoveryProperties, final ScheduledExecutorService scheduler,
+                      final Callable<Boolean> refresh, final ILogger logger) {
+        this.nacosDiscoveryProperties = nacosDiscoveryProperties;
+        this.scheduler = scheduler;
+        this.refresh = refresh;
+        this.logger = logger;
+        this.intervalMillis = nacosDiscoveryProperties.getDiscoveryRefreshMinMillisOrDefault();
+        this.openMillis = nacosDiscoveryProperties.getDiscoveryBreakerOpenMillisOrDefault();
+    }
+
+    void start() {
+        //random first delay so members started together do not refresh together
+        schedule(ThreadLocalRandom.current().nextLong(intervalMillis + 1));
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * discoverNodes直接返回快照时调用
+     */
+    void recordServed() {
+        savedCalls.increment();
+    }
+
+    private void run() {
+        final long now = System.currentTimeMillis();
+        if (now < openUntil) {
+            rejectedByBreaker.increment();
+            schedule(openUntil - now);
+            return;
+        }
+        try {
+            nacosCalls.increment();
+            final boolean changed = refresh.call();
+            if (consecutiveFailures >= nacosDiscoveryProperties.getDiscoveryBreakerFailuresOrDefault()) {
+                logger.info("Nacos discovery recovered, " + this);
+            }
+            consecutiveFailures = 0;
+            openMillis = nacosDiscoveryProperties.getDiscoveryBreakerOpenMillisOrDefault();
+            intervalMillis = changed
+                ? nacosDiscoveryProperties.getDiscoveryRefreshMinMillisOrDefault()
+                : Math.min(intervalMillis * 2, nacosDiscoveryProperties.getDiscoveryRefreshMaxMillisOrDefault());
+        } catch (Exception e) {
+            failures.increment();
+            if (++consecutiveFailures >= nacosDiscoveryProperties.getDiscoveryBreakerFailuresOrDefault()) {
+                openUntil = now + openMillis;
+                logger.warning("Nacos discovery failed " + consecutiveFailures + " times, serving cached members for " + openMillis
+                    + " ms, " + this, e);
+                openMillis = Math.min(openMillis * 2, nacosDiscoveryProperties.getDiscoveryRefreshMaxMillisOrDefault() * 4);
+            } else {
+                logger.fine("Nacos discovery failed", e);
+            }
+        }
+        schedule(withJitter(intervalMillis));
+    }
+
+    private long withJitter(final long delayMillis) {
+        final long jitter = delayMillis * nacosDiscoveryProperties.getDiscoveryRefreshJitterPercentOrDefault() / 100;
+        if (jitter <= 0) {
+            return delayMillis;
+        }
+        return delayMillis - jitter + ThreadLocalRandom.current().nextLong(2 * jitter + 1);
+    }
+
+    private void schedule(final long delayMillis) {
+        if (!stopped && !scheduler.isShutdown()) {
+            scheduler.schedule(this::run, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    long getNacosCalls() {
+        return nacosCalls.sum();
+    }
+
+    long getSavedCalls() {
+        return savedCalls.sum();
+    }
+
+    long getFailures() {
+        return failures.sum();
+    }
+
+    long getRejectedByBreaker() {
+        return rejectedByBreaker.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "nacosCalls=" + getNacosCalls() + ", savedCalls=" + getSavedCalls() + ", failures=" + getFailures()
+            + ", rejectedByBreaker=" + getRejectedByBreaker() + ", intervalMillis=" + intervalMillis;
+    }
+}
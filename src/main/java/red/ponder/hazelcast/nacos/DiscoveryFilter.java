@@ -0,0 +1,105 @@
+package red.ponder.hazelcast.nacos;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.hazelcast.cluster.Address;
+
+import red.ponder.hazelcast.nacos.utils.NetUtils;
+
+/**
+ * 过滤掉不应参与加入集群的实例
+ * 先去掉不健康、被禁用、权重为0的实例, 再并发探测剩余实例的端口, 探测结果短时间缓存
+ * Nacos尚未摘除的已下线实例不会再让Hazelcast耗尽加入超时
+ *
+ * @author ponder
+ */
+final class DiscoveryFilter {
+
+    private final NacosDiscoveryProperties nacosDiscoveryProperties;
+
+    private final Address localAddress;
+
+    private final ConcurrentMap<String, ProbeResult> probes = new ConcurrentHashMap<>();
+
+    DiscoveryFilter(final NacosDiscoveryProperties nacosDiscoveryProperties, final Address localAddress) {
+        this.nacosDiscoveryProperties = nacosDiscoveryProperties;
+        this.localAddress = localAddress;
+    }
+
+    List<Instance> filter(final List<Instance> members) {
+        final List<Instance> candidates = new ArrayList<>(members.size());
+        for (Instance member : members) {
+            if (member.isHealthy() && member.isEnabled() && member.getWeight() > 0) {
+                candidates.add(member);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
+        final long now = System.nanoTime();
+        final List<Instance> unknown = new ArrayList<>();
+        final List<Instance> reachable = new ArrayList<>(candidates.size());
+        Instance local = null;
+        for (Instance candidate : candidates) {
+            if (isLocal(candidate)) {
+                local = candidate;
+                continue;
+            }
+            final ProbeResult cached = probes.get(candidate.toInetAddr());
+            if (cached == null || cached.expiresAt - now <= 0) {
+                unknown.add(candidate);
+            } else if (cached.reachable) {
+                reachable.add(candidate);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            probe(unknown, reachable, now);
+        }
+        //all remote probes failing usually means our own network is broken, let hazelcast decide
+        if (reachable.isEmpty()) {
+            return candidates;
+        }
+        if (local != null) {
+            reachable.add(local);
+        }
+        return reachable;
+    }
+
+    private void probe(final List<Instance> unknown, final List<Instance> reachable, final long now) {
+        final List<InetSocketAddress> targets = new ArrayList<>(unknown.size());
+        for (Instance candidate : unknown) {
+            targets.add(new InetSocketAddress(candidate.getIp(), candidate.getPort()));
+        }
+        final boolean[] results = NetUtils.probeReachable(targets, nacosDiscoveryProperties.getDiscoveryProbeTimeoutMillisOrDefault());
+        final long expiresAt = now + TimeUnit.MILLISECONDS.toNanos(nacosDiscoveryProperties.getDiscoveryProbeCacheMillisOrDefault());
+        for (int i = 0; i < results.length; i++) {
+            probes.put(unknown.get(i).toInetAddr(), new ProbeResult(results[i], expiresAt));
+            if (results[i]) {
+                reachable.add(unknown.get(i));
+            }
+        }
+        probes.values().removeIf(result -> result.expiresAt - now <= 0);
+    }
+
+    private boolean isLocal(final Instance candidate) {
+        return localAddress != null && localAddress.getHost().equals(candidate.getIp()) && localAddress.getPort() == candidate.getPort();
+    }
+
+    private static final class ProbeResult {
+        private final boolean reachable;
+
+        private final long expiresAt;
+
+        private ProbeResult(final boolean reachable, final long expiresAt) {
+            this.reachable = reachable;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
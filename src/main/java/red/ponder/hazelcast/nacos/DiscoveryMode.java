@@ -0,0 +1,24 @@
+package red.ponder.hazelcast.nacos;
+
+/**
+ * 成员发现方式
+ *
+ * @author ponder
+ */
+public enum DiscoveryMode {
+
+    /**
+     * 每次discoverNodes都向Nacos查询实例列表
+     */
+    DIRECT,
+
+    /**
+     * 启动时订阅服务, 由Nacos推送变更, discoverNodes只读取本地快照
+     */
+    SUBSCRIBE,
+
+    /**
+     * 策略自行定时拉取, 成员变化时加快, 稳定后退避, Nacos故障时熔断, discoverNodes只读取本地快照
+     */
+    ADAPTIVE
+}
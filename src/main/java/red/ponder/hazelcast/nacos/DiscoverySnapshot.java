@@ -0,0 +1,62 @@
+package red.ponder.hazelcast.nacos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.hazelcast.spi.discovery.DiscoveryNode;
+
+/**
+ * 不可变的成员快照, 每次成员变化时整体替换
+ *
+ * @author ponder
+ */
+final class DiscoverySnapshot {
+
+    static final DiscoverySnapshot EMPTY = new DiscoverySnapshot(0L, Collections.emptyList());
+
+    private final long version;
+
+    private final List<DiscoveryNode> nodes;
+
+    private DiscoverySnapshot(final long version, final List<DiscoveryNode> nodes) {
+        this.version = version;
+        this.nodes = nodes;
+    }
+
+    /**
+     * 基于当前快照生成新版本, 成员地址和属性都未变化时返回自身
+     */
+    DiscoverySnapshot next(final List<DiscoveryNode> discovered) {
+        if (sameMembers(discovered)) {
+            return this;
+        }
+        return new DiscoverySnapshot(version + 1, Collections.unmodifiableList(new ArrayList<>(discovered)));
+    }
+
+    private boolean sameMembers(final List<DiscoveryNode> discovered) {
+        if (discovered.size() != nodes.size()) {
+            return false;
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            final DiscoveryNode current = nodes.get(i);
+            final DiscoveryNode candidate = discovered.get(i);
+            //zone/rack/host metadata may be republished at the same address
+            if (!current.getPrivateAddress().equals(candidate.getPrivateAddress())
+                || !Objects.equals(current.getPublicAddress(), candidate.getPublicAddress())
+                || !Objects.equals(current.getProperties(), candidate.getProperties())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    List<DiscoveryNode> getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,35 @@
+package red.ponder.hazelcast.nacos;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 按实例名记录成员从Nacos注销的动作
+ * Hazelcast在成员离开集群之后才销毁发现策略, 停机方通过这里在离开之前先注销
+ *
+ * @author ponder
+ */
+public final class MemberDeparture {
+
+    private static final ConcurrentMap<String, BooleanSupplier> DEREGISTRATIONS = new ConcurrentHashMap<>();
+
+    private MemberDeparture() {
+    }
+
+    static void register(final String instanceName, final BooleanSupplier deregistration) {
+        DEREGISTRATIONS.put(instanceName, deregistration);
+    }
+
+    static void unregister(final String instanceName, final BooleanSupplier deregistration) {
+        DEREGISTRATIONS.remove(instanceName, deregistration);
+    }
+
+    /**
+     * @return 成员在Nacos注册过且这一次注销成功时返回true
+     */
+    public static boolean deregister(final String instanceName) {
+        final BooleanSupplier deregistration = DEREGISTRATIONS.get(instanceName);
+        return deregistration != null && deregistration.getAsBoolean();
+    }
+}
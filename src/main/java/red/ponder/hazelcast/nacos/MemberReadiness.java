@@ -0,0 +1,40 @@
+package red.ponder.hazelcast.nacos;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按实例名记录成员是否已经完成启动和入群
+ * 发现策略在Hazelcast启动线程内创建, 拿不到实例本身, 通过这里等待启动方通知就绪后再注册到Nacos
+ *
+ * @author ponder
+ */
+public final class MemberReadiness {
+
+    private static final ConcurrentMap<String, CompletableFuture<Void>> READINESS = new ConcurrentHashMap<>();
+
+    private MemberReadiness() {
+    }
+
+    /**
+     * 实例开始启动, 重启时替换掉上一次已完成的future
+     */
+    public static void starting(final String instanceName) {
+        READINESS.compute(instanceName, (name, current) -> current == null || current.isDone() ? new CompletableFuture<>() : current);
+    }
+
+    /**
+     * 实例已经完成启动和入群
+     */
+    public static void ready(final String instanceName) {
+        of(instanceName).complete(null);
+    }
+
+    /**
+     * 实例当前这一次启动的就绪future
+     */
+    public static CompletableFuture<Void> of(final String instanceName) {
+        return READINESS.computeIfAbsent(instanceName, name -> new CompletableFuture<>());
+    }
+}
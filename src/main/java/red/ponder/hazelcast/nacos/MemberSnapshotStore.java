@@ -0,0 +1,121 @@
+package red.ponder.hazelcast.nacos;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.hazelcast.cluster.Address;
+import com.hazelcast.spi.discovery.DiscoveryNode;
+import com.hazelcast.spi.discovery.SimpleDiscoveryNode;
+
+/**
+ * 最近一次成功发现的成员列表, 持久化到本地磁盘
+ * 文件格式: magic(4) format(2) writtenAt(8) count(4) [hostLength(1) host port(4)]...
+ *
+ * @author ponder
+ */
+final class MemberSnapshotStore {
+
+    private static final int MAGIC = 0x4E434D53;
+
+    private static final short FORMAT = 1;
+
+    private static final int HEADER_BYTES = 4 + 2 + 8 + 4;
+
+    private static final int MAX_HOST_BYTES = 255;
+
+    private final Path file;
+
+    MemberSnapshotStore(final Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 通过内存映射读取快照, 文件不存在或损坏时返回空列表
+     */
+    List<DiscoveryNode> load() throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyList();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < HEADER_BYTES) {
+                return Collections.emptyList();
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getShort() != FORMAT) {
+                return Collections.emptyList();
+            }
+            buffer.getLong();
+            final int count = buffer.getInt();
+            if (count < 0 || count > (size - HEADER_BYTES) / (1 + 4)) {
+                return Collections.emptyList();
+            }
+            final List<DiscoveryNode> nodes = new ArrayList<>(count);
+            final byte[] host = new byte[MAX_HOST_BYTES];
+            for (int i = 0; i < count; i++) {
+                final int length = buffer.get() & 0xFF;
+                buffer.get(host, 0, length);
+                final int port = buffer.getInt();
+                nodes.add(new SimpleDiscoveryNode(new Address(new String(host, 0, length, StandardCharsets.UTF_8), port)));
+            }
+            return nodes;
+        } catch (BufferUnderflowException | UnknownHostException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 先写临时文件再原子替换, 读者不会看到写了一半的快照
+     */
+    void save(final List<DiscoveryNode> nodes) throws IOException {
+        final List<byte[]> hosts = new ArrayList<>(nodes.size());
+        int size = HEADER_BYTES;
+        for (DiscoveryNode node : nodes) {
+            final byte[] host = node.getPrivateAddress().getHost().getBytes(StandardCharsets.UTF_8);
+            if (host.length > MAX_HOST_BYTES) {
+                throw new IOException("Host name too long: " + node.getPrivateAddress().getHost());
+            }
+            hosts.add(host);
+            size += 1 + host.length + 4;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putShort(FORMAT).putLong(System.currentTimeMillis()).putInt(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            final byte[] host = hosts.get(i);
+            buffer.put((byte) host.length).put(host).putInt(nodes.get(i).getPrivateAddress().getPort());
+        }
+        buffer.flip();
+
+        final Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        final Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    Path getFile() {
+        return file;
+    }
+}
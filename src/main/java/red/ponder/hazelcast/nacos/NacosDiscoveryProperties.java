@@ -1,20 +1,27 @@
 package red.ponder.hazelcast.nacos;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Properties;
 import java.util.StringJoiner;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 
+import com.alibaba.nacos.api.PropertyKeyConst;
+import com.alibaba.nacos.client.naming.utils.InitUtils;
 import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.InMemoryFormat;
 import com.hazelcast.config.MaxSizePolicy;
 import com.hazelcast.config.properties.PropertyDefinition;
 import com.hazelcast.config.properties.PropertyTypeConverter;
 import com.hazelcast.config.properties.SimplePropertyDefinition;
+import com.hazelcast.spi.partitiongroup.PartitionGroupMetaData;
 
 /**
  * @author ponder
@@ -38,6 +45,13 @@ public class NacosDiscoveryProperties {
     @Value("${spring.cloud.nacos.hazelcast.time.to.live}")
     private Integer timeToLive;
 
+    /**
+     * 在TTL上随机增加的百分比, 避免同时写入的条目同时过期
+     * Default: 0
+     */
+    @Value("${spring.cloud.nacos.hazelcast.time.to.live.jitter:#{null}}")
+    private Integer timeToLiveJitterPercent;
+
     /**
      * 缓存策略
      */
@@ -47,6 +61,83 @@ public class NacosDiscoveryProperties {
     @Value("${spring.cloud.nacos.hazelcast.max.size.policy}")
     private MaxSizePolicy maxSizePolicy;
 
+    /**
+     * 写缓存时是否异步, 不等待集群确认
+     * Default: false
+     */
+    @Value("${spring.cloud.nacos.hazelcast.async.write:#{null}}")
+    private Boolean asyncWrite;
+
+    /**
+     * clear时是否只递增命名空间版本号, 不清空整个IMap
+     * Default: false
+     */
+    @Value("${spring.cloud.nacos.hazelcast.generation.clear:#{null}}")
+    private Boolean generationClear;
+
+    /**
+     * 其他节点正在加载同一个key时, 最多等待的毫秒数
+     * Default: 3000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.loader.lease.wait:#{null}}")
+    private Long loaderLeaseWaitMillis;
+
+    /**
+     * 加载租约的有效毫秒数, 持有者宕机后租约自动释放
+     * Default: 10000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.loader.lease:#{null}}")
+    private Long loaderLeaseMillis;
+
+    /**
+     * 是否为每个缓存Map开启近缓存
+     * Default: false
+     */
+    @Value("${spring.cloud.nacos.hazelcast.near.cache.enabled:#{null}}")
+    private Boolean nearCacheEnabled;
+
+    /**
+     * 近缓存存储格式
+     * Default: BINARY
+     */
+    @Value("${spring.cloud.nacos.hazelcast.near.cache.in.memory.format:#{null}}")
+    private InMemoryFormat nearCacheInMemoryFormat;
+
+    /**
+     * 近缓存最大条目数
+     * Default: 与size相同
+     */
+    @Value("${spring.cloud.nacos.hazelcast.near.cache.size:#{null}}")
+    private Integer nearCacheSize;
+
+    /**
+     * 近缓存淘汰策略
+     * Default: LRU
+     */
+    @Value("${spring.cloud.nacos.hazelcast.near.cache.policy:#{null}}")
+    private EvictionPolicy nearCachePolicy;
+
+    /**
+     * 数据变化时是否使近缓存失效
+     * Default: true
+     */
+    @Value("${spring.cloud.nacos.hazelcast.near.cache.invalidate.on.change:#{null}}")
+    private Boolean nearCacheInvalidateOnChange;
+
+    /**
+     * 重启后是否预加载近缓存的key(仅客户端生效)
+     * Default: false
+     */
+    @Value("${spring.cloud.nacos.hazelcast.near.cache.preload:#{null}}")
+    private Boolean nearCachePreload;
+
+    /**
+     * 近缓存预加载key的存放目录
+     * Default: 工作目录
+     */
+    @Value("${spring.cloud.nacos.hazelcast.near.cache.preload.directory:#{null}}")
+    private String nearCachePreloadDirectory;
+
     /**
      * Connection string to your Nacos server.
      * Default: There is no default, this is a required property.
@@ -86,6 +177,276 @@ public class NacosDiscoveryProperties {
     @Value("${spring.cloud.nacos.hazelcast.secret.key}")
     private String secretKey;
 
+    /**
+     * 本成员所在的可用区, 配置后按可用区分组放置备份
+     */
+    @Value("${spring.cloud.nacos.hazelcast.zone:#{null}}")
+    private String zone;
+
+    /**
+     * 本成员所在的机架
+     */
+    @Value("${spring.cloud.nacos.hazelcast.rack:#{null}}")
+    private String rack;
+
+    /**
+     * 本成员所在的物理主机
+     */
+    @Value("${spring.cloud.nacos.hazelcast.host:#{null}}")
+    private String host;
+
+    /**
+     * 是否允许从本地备份读取, 减少跨可用区读取
+     * Default: false
+     */
+    @Value("${spring.cloud.nacos.hazelcast.read.backup.data:#{null}}")
+    private Boolean readBackupData;
+
+    /**
+     * 成员发现方式
+     * Default: DIRECT
+     */
+    @Value("${spring.cloud.nacos.hazelcast.discovery.mode:#{null}}")
+    private DiscoveryMode discoveryMode;
+
+    /**
+     * ADAPTIVE模式下成员变化时的拉取间隔毫秒数
+     * Default: 1000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.discovery.refresh.min:#{null}}")
+    private Long discoveryRefreshMinMillis;
+
+    /**
+     * ADAPTIVE模式下成员稳定后退避到的最长间隔毫秒数
+     * Default: 30000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.discovery.refresh.max:#{null}}")
+    private Long discoveryRefreshMaxMillis;
+
+    /**
+     * ADAPTIVE模式下每次间隔的随机抖动百分比
+     * Default: 20
+     */
+    @Value("${spring.cloud.nacos.hazelcast.discovery.refresh.jitter:#{null}}")
+    private Integer discoveryRefreshJitterPercent;
+
+    /**
+     * 连续失败多少次后熔断
+     * Default: 3
+     */
+    @Value("${spring.cloud.nacos.hazelcast.discovery.breaker.failures:#{null}}")
+    private Integer discoveryBreakerFailures;
+
+    /**
+     * 熔断后暂停请求Nacos的毫秒数, 再次失败时翻倍
+     * Default: 10000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.discovery.breaker.open:#{null}}")
+    private Long discoveryBreakerOpenMillis;
+
+    /**
+     * 是否过滤禁用、权重为0以及端口不可达的实例
+     * Default: false
+     */
+    @Value("${spring.cloud.nacos.hazelcast.discovery.filter.enabled:#{null}}")
+    private Boolean discoveryFilterEnabled;
+
+    /**
+     * 探测实例端口的超时毫秒数
+     * Default: 300
+     */
+    @Value("${spring.cloud.nacos.hazelcast.discovery.probe.timeout:#{null}}")
+    private Integer discoveryProbeTimeoutMillis;
+
+    /**
+     * 探测结果缓存的毫秒数
+     * Default: 5000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.discovery.probe.cache:#{null}}")
+    private Long discoveryProbeCacheMillis;
+
+    /**
+     * 最近一次成功发现的成员列表保存位置, 用于冷启动和Nacos不可用时兜底
+     * Default: 不保存
+     */
+    @Value("${spring.cloud.nacos.hazelcast.discovery.snapshot.file:#{null}}")
+    private String discoverySnapshotFile;
+
+    /**
+     * 应用启动完成后立即并行启动Nacos客户端和Hazelcast节点, 成员就绪后才注册到Nacos
+     * Default: false
+     */
+    @Value("${spring.cloud.nacos.hazelcast.bootstrap.eager:#{null}}")
+    private Boolean bootstrapEager;
+
+    /**
+     * 等待成员就绪的最长毫秒数, 超时后仍然注册到Nacos
+     * Default: 60000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.bootstrap.ready.timeout:#{null}}")
+    private Long bootstrapReadyTimeoutMillis;
+
+    /**
+     * 以智能客户端方式连接集群, 不持有分区数据, 成员同样通过Nacos发现
+     * Default: false
+     */
+    @Value("${spring.cloud.nacos.hazelcast.client.mode:#{null}}")
+    private Boolean clientMode;
+
+    /**
+     * 是否在IMap前面启用本地一级缓存
+     * Default: false
+     */
+    @Value("${spring.cloud.nacos.hazelcast.l1.enabled:#{null}}")
+    private Boolean l1Enabled;
+
+    /**
+     * 每个命名空间一级缓存的最大条目数
+     * Default: 与size相同
+     */
+    @Value("${spring.cloud.nacos.hazelcast.l1.size:#{null}}")
+    private Integer l1Size;
+
+    /**
+     * 一级缓存条目的存活毫秒数, 也是其他节点单个key修改的最长可见延迟
+     * Default: 5000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.l1.ttl:#{null}}")
+    private Long l1TimeToLiveMillis;
+
+    /**
+     * 命名空间清空广播的合并窗口毫秒数, 窗口内的多次清空合并为一条消息
+     * Default: 10
+     */
+    @Value("${spring.cloud.nacos.hazelcast.l1.invalidation.delay:#{null}}")
+    private Long l1InvalidationDelayMillis;
+
+    /**
+     * 热重启快照目录, 设置后定期把本节点持有的缓存条目写入该目录, 重启入群后读回
+     * Default: 不开启
+     */
+    @Value("${spring.cloud.nacos.hazelcast.warm.restart.directory:#{null}}")
+    private String warmRestartDirectory;
+
+    /**
+     * 热重启快照间隔毫秒数, 每次只重写发生过变化的分区
+     * Default: 60000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.warm.restart.interval:#{null}}")
+    private Long warmRestartIntervalMillis;
+
+    /**
+     * 缓存调优配置在Nacos配置中心的dataId, 设置后订阅变更并在运行中生效
+     * Default: 不开启
+     */
+    @Value("${spring.cloud.nacos.hazelcast.tuning.data.id:#{null}}")
+    private String tuningDataId;
+
+    /**
+     * 缓存调优配置的group
+     * Default: DEFAULT_GROUP
+     */
+    @Value("${spring.cloud.nacos.hazelcast.tuning.group:#{null}}")
+    private String tuningGroup;
+
+    /**
+     * 是否合并短时间内的写入, 按分区所有者分组批量写入
+     * Default: false
+     */
+    @Value("${spring.cloud.nacos.hazelcast.write.coalesce.enabled:#{null}}")
+    private Boolean writeCoalesceEnabled;
+
+    /**
+     * 一批写入最多等待的微秒数
+     * Default: 200
+     */
+    @Value("${spring.cloud.nacos.hazelcast.write.coalesce.delay:#{null}}")
+    private Long writeCoalesceDelayMicros;
+
+    /**
+     * 一批最多合并的写入数
+     * Default: 256
+     */
+    @Value("${spring.cloud.nacos.hazelcast.write.coalesce.batch:#{null}}")
+    private Integer writeCoalesceBatch;
+
+    /**
+     * 等待合并的写入队列容量, 满了以后直接同步写入
+     * Default: 10000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.write.coalesce.queue:#{null}}")
+    private Integer writeCoalesceQueue;
+
+    /**
+     * 按加载成本淘汰(GDSF)的Map名, 逗号分隔, *表示全部
+     * Default: None
+     */
+    @Value("${spring.cloud.nacos.hazelcast.cost.aware.maps:#{null}}")
+    private String costAwareMaps;
+
+    /**
+     * 压缩缓存值的Map名, 逗号分隔, *表示全部
+     * Default: None
+     */
+    @Value("${spring.cloud.nacos.hazelcast.compression.maps:#{null}}")
+    private String compressionMaps;
+
+    /**
+     * 序列化后达到该字节数的值才压缩
+     * Default: 4096
+     */
+    @Value("${spring.cloud.nacos.hazelcast.compression.threshold:#{null}}")
+    private Integer compressionThreshold;
+
+    /**
+     * deflate压缩级别, 0-9, 默认最快
+     * Default: 1
+     */
+    @Value("${spring.cloud.nacos.hazelcast.compression.level:#{null}}")
+    private Integer compressionLevel;
+
+    /**
+     * 是否抽样统计热点key和各分区的操作数
+     * Default: false
+     */
+    @Value("${spring.cloud.nacos.hazelcast.hot.keys.enabled:#{null}}")
+    private Boolean hotKeysEnabled;
+
+    /**
+     * 每多少次操作抽样一次
+     * Default: 16
+     */
+    @Value("${spring.cloud.nacos.hazelcast.hot.keys.sample:#{null}}")
+    private Integer hotKeysSample;
+
+    /**
+     * 每个Map保留的热点key个数
+     * Default: 20
+     */
+    @Value("${spring.cloud.nacos.hazelcast.hot.keys.top:#{null}}")
+    private Integer hotKeysTop;
+
+    /**
+     * 统计窗口毫秒数, 查询返回最近一个完整窗口
+     * Default: 60000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.hot.keys.window:#{null}}")
+    private Long hotKeysWindowMillis;
+
+    /**
+     * 停机时从Nacos注销后等待其他节点和客户端感知的毫秒数
+     * Default: 5000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.shutdown.propagation.wait:#{null}}")
+    private Long shutdownPropagationMillis;
+
+    /**
+     * 停机时等待集群分区安全(备份同步完成)的最长毫秒数, 超时后照常离开
+     * Default: 30000
+     */
+    @Value("${spring.cloud.nacos.hazelcast.shutdown.safe.timeout:#{null}}")
+    private Long shutdownSafeTimeoutMillis;
+
     public NacosDiscoveryProperties(final Environment environment) {
         this.environment = environment;
     }
@@ -96,8 +457,20 @@ public class NacosDiscoveryProperties {
             .add("environment=" + environment)
             .add("size=" + size)
             .add("timeToLive=" + timeToLive)
+            .add("timeToLiveJitterPercent=" + timeToLiveJitterPercent)
             .add("policy=" + policy)
             .add("maxSizePolicy=" + maxSizePolicy)
+            .add("asyncWrite=" + asyncWrite)
+            .add("generationClear=" + generationClear)
+            .add("loaderLeaseWaitMillis=" + loaderLeaseWaitMillis)
+            .add("loaderLeaseMillis=" + loaderLeaseMillis)
+            .add("nearCacheEnabled=" + nearCacheEnabled)
+            .add("nearCacheInMemoryFormat=" + nearCacheInMemoryFormat)
+            .add("nearCacheSize=" + nearCacheSize)
+            .add("nearCachePolicy=" + nearCachePolicy)
+            .add("nearCacheInvalidateOnChange=" + nearCacheInvalidateOnChange)
+            .add("nearCachePreload=" + nearCachePreload)
+            .add("nearCachePreloadDirectory='" + nearCachePreloadDirectory + "'")
             .add("serverAddr='" + serverAddr + "'")
             .add("applicationName='" + applicationName + "'")
             .add("namespace='" + namespace + "'")
@@ -106,6 +479,45 @@ public class NacosDiscoveryProperties {
             .add("password='" + password + "'")
             .add("accessKey='" + accessKey + "'")
             .add("secretKey='" + secretKey + "'")
+            .add("zone='" + zone + "'")
+            .add("rack='" + rack + "'")
+            .add("host='" + host + "'")
+            .add("readBackupData=" + readBackupData)
+            .add("discoveryMode=" + discoveryMode)
+            .add("discoveryRefreshMinMillis=" + discoveryRefreshMinMillis)
+            .add("discoveryRefreshMaxMillis=" + discoveryRefreshMaxMillis)
+            .add("discoveryRefreshJitterPercent=" + discoveryRefreshJitterPercent)
+            .add("discoveryBreakerFailures=" + discoveryBreakerFailures)
+            .add("discoveryBreakerOpenMillis=" + discoveryBreakerOpenMillis)
+            .add("discoveryFilterEnabled=" + discoveryFilterEnabled)
+            .add("discoveryProbeTimeoutMillis=" + discoveryProbeTimeoutMillis)
+            .add("discoveryProbeCacheMillis=" + discoveryProbeCacheMillis)
+            .add("discoverySnapshotFile='" + discoverySnapshotFile + "'")
+            .add("bootstrapEager=" + bootstrapEager)
+            .add("bootstrapReadyTimeoutMillis=" + bootstrapReadyTimeoutMillis)
+            .add("clientMode=" + clientMode)
+            .add("l1Enabled=" + l1Enabled)
+            .add("l1Size=" + l1Size)
+            .add("l1TimeToLiveMillis=" + l1TimeToLiveMillis)
+            .add("l1InvalidationDelayMillis=" + l1InvalidationDelayMillis)
+            .add("warmRestartDirectory='" + warmRestartDirectory + "'")
+            .add("warmRestartIntervalMillis=" + warmRestartIntervalMillis)
+            .add("tuningDataId='" + tuningDataId + "'")
+            .add("tuningGroup='" + tuningGroup + "'")
+            .add("writeCoalesceEnabled=" + writeCoalesceEnabled)
+            .add("writeCoalesceDelayMicros=" + writeCoalesceDelayMicros)
+            .add("writeCoalesceBatch=" + writeCoalesceBatch)
+            .add("writeCoalesceQueue=" + writeCoalesceQueue)
+            .add("costAwareMaps='" + costAwareMaps + "'")
+            .add("compressionMaps='" + compressionMaps + "'")
+            .add("compressionThreshold=" + compressionThreshold)
+            .add("compressionLevel=" + compressionLevel)
+            .add("hotKeysEnabled=" + hotKeysEnabled)
+            .add("hotKeysSample=" + hotKeysSample)
+            .add("hotKeysTop=" + hotKeysTop)
+            .add("hotKeysWindowMillis=" + hotKeysWindowMillis)
+            .add("shutdownPropagationMillis=" + shutdownPropagationMillis)
+            .add("shutdownSafeTimeoutMillis=" + shutdownSafeTimeoutMillis)
             .toString();
     }
 
@@ -122,6 +534,44 @@ public class NacosDiscoveryProperties {
         return propertyDefinitions;
     }
 
+    /**
+     * 发布到Nacos实例元数据和Hazelcast成员属性中的分组信息, 未配置的项不写入
+     */
+    public final Map<String, String> getPartitionGroupMetadata() {
+        final Map<String, String> metadata = new HashMap<>(4);
+        if (zone != null) {
+            metadata.put(PartitionGroupMetaData.PARTITION_GROUP_ZONE, zone);
+        }
+        if (rack != null) {
+            metadata.put(PartitionGroupMetaData.PARTITION_GROUP_RACK, rack);
+        }
+        if (host != null) {
+            metadata.put(PartitionGroupMetaData.PARTITION_GROUP_HOST, host);
+        }
+        return metadata;
+    }
+
+    /**
+     * Nacos客户端连接参数, 未配置的项不写入
+     */
+    public final Properties getNacosClientProperties() {
+        final Properties properties = new Properties();
+        putIfPresent(properties, PropertyKeyConst.SERVER_ADDR, getServerAddrOrDefault());
+        putIfPresent(properties, PropertyKeyConst.NAMESPACE, getNamespaceOrDefault());
+        putIfPresent(properties, PropertyKeyConst.USERNAME, getUsernameOrDefault());
+        putIfPresent(properties, PropertyKeyConst.PASSWORD, getPasswordOrDefault());
+        putIfPresent(properties, PropertyKeyConst.ACCESS_KEY, getAccessKeyOrDefault());
+        putIfPresent(properties, PropertyKeyConst.SECRET_KEY, getSecretKeyOrDefault());
+        InitUtils.initEndpoint(properties);
+        return properties;
+    }
+
+    private void putIfPresent(final Properties properties, final String key, final String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
     private PropertyDefinition property(String key) {
         return new SimplePropertyDefinition(key, true, PropertyTypeConverter.STRING, null);
     }
@@ -142,6 +592,58 @@ public class NacosDiscoveryProperties {
         return Optional.ofNullable(timeToLive).orElse(300);
     }
 
+    public final Integer getTimeToLiveJitterPercentOrDefault() {
+        return Optional.ofNullable(timeToLiveJitterPercent).orElse(0);
+    }
+
+    public final Long getLoaderLeaseWaitMillisOrDefault() {
+        return Optional.ofNullable(loaderLeaseWaitMillis).orElse(3000L);
+    }
+
+    public final Long getLoaderLeaseMillisOrDefault() {
+        return Optional.ofNullable(loaderLeaseMillis).orElse(10_000L);
+    }
+
+    public final boolean isReadBackupDataOrDefault() {
+        return Optional.ofNullable(readBackupData).orElse(false);
+    }
+
+    public final boolean isAsyncWriteOrDefault() {
+        return Optional.ofNullable(asyncWrite).orElse(false);
+    }
+
+    public final boolean isGenerationClearOrDefault() {
+        return Optional.ofNullable(generationClear).orElse(false);
+    }
+
+    public final boolean isNearCacheEnabledOrDefault() {
+        return Optional.ofNullable(nearCacheEnabled).orElse(false);
+    }
+
+    public final InMemoryFormat getNearCacheInMemoryFormatOrDefault() {
+        return Optional.ofNullable(nearCacheInMemoryFormat).orElse(InMemoryFormat.BINARY);
+    }
+
+    public final Integer getNearCacheSizeOrDefault() {
+        return Optional.ofNullable(nearCacheSize).orElseGet(this::getSizeOrDefault);
+    }
+
+    public final EvictionPolicy getNearCachePolicyOrDefault() {
+        return Optional.ofNullable(nearCachePolicy).orElse(EvictionPolicy.LRU);
+    }
+
+    public final boolean isNearCacheInvalidateOnChangeOrDefault() {
+        return Optional.ofNullable(nearCacheInvalidateOnChange).orElse(true);
+    }
+
+    public final boolean isNearCachePreloadOrDefault() {
+        return Optional.ofNullable(nearCachePreload).orElse(false);
+    }
+
+    public final String getNearCachePreloadDirectoryOrDefault() {
+        return Optional.ofNullable(nearCachePreloadDirectory).orElse("");
+    }
+
     public final String getServerAddrOrDefault() {
         return Optional.ofNullable(serverAddr).orElseGet(() -> environment.getProperty("spring.cloud.nacos.discovery.server-addr"));
     }
@@ -174,6 +676,126 @@ public class NacosDiscoveryProperties {
         return Optional.ofNullable(secretKey).orElseGet(() -> System.getenv("NACOS_REGISTRY_SECRET_KEY"));
     }
 
+    public final DiscoveryMode getDiscoveryModeOrDefault() {
+        return Optional.ofNullable(discoveryMode).orElse(DiscoveryMode.DIRECT);
+    }
+
+    public final Long getDiscoveryRefreshMinMillisOrDefault() {
+        return Optional.ofNullable(discoveryRefreshMinMillis).orElse(1000L);
+    }
+
+    public final Long getDiscoveryRefreshMaxMillisOrDefault() {
+        return Optional.ofNullable(discoveryRefreshMaxMillis).orElse(30_000L);
+    }
+
+    public final Integer getDiscoveryRefreshJitterPercentOrDefault() {
+        return Optional.ofNullable(discoveryRefreshJitterPercent).orElse(20);
+    }
+
+    public final Integer getDiscoveryBreakerFailuresOrDefault() {
+        return Optional.ofNullable(discoveryBreakerFailures).orElse(3);
+    }
+
+    public final Long getDiscoveryBreakerOpenMillisOrDefault() {
+        return Optional.ofNullable(discoveryBreakerOpenMillis).orElse(10_000L);
+    }
+
+    public final boolean isDiscoveryFilterEnabledOrDefault() {
+        return Optional.ofNullable(discoveryFilterEnabled).orElse(false);
+    }
+
+    public final Integer getDiscoveryProbeTimeoutMillisOrDefault() {
+        return Optional.ofNullable(discoveryProbeTimeoutMillis).orElse(300);
+    }
+
+    public final Long getDiscoveryProbeCacheMillisOrDefault() {
+        return Optional.ofNullable(discoveryProbeCacheMillis).orElse(5000L);
+    }
+
+    public final boolean isBootstrapEagerOrDefault() {
+        return Optional.ofNullable(bootstrapEager).orElse(false);
+    }
+
+    public final Long getBootstrapReadyTimeoutMillisOrDefault() {
+        return Optional.ofNullable(bootstrapReadyTimeoutMillis).orElse(60_000L);
+    }
+
+    public final boolean isClientModeOrDefault() {
+        return Optional.ofNullable(clientMode).orElse(false);
+    }
+
+    public final boolean isL1EnabledOrDefault() {
+        return Optional.ofNullable(l1Enabled).orElse(false);
+    }
+
+    public final Integer getL1SizeOrDefault() {
+        return Optional.ofNullable(l1Size).orElseGet(this::getSizeOrDefault);
+    }
+
+    public final Long getL1TimeToLiveMillisOrDefault() {
+        return Optional.ofNullable(l1TimeToLiveMillis).orElse(5000L);
+    }
+
+    public final Long getL1InvalidationDelayMillisOrDefault() {
+        return Optional.ofNullable(l1InvalidationDelayMillis).orElse(10L);
+    }
+
+    public final Long getWarmRestartIntervalMillisOrDefault() {
+        return Optional.ofNullable(warmRestartIntervalMillis).orElse(60_000L);
+    }
+
+    public final String getTuningGroupOrDefault() {
+        return Optional.ofNullable(tuningGroup).orElse("DEFAULT_GROUP");
+    }
+
+    public final boolean isWriteCoalesceEnabledOrDefault() {
+        return Optional.ofNullable(writeCoalesceEnabled).orElse(false);
+    }
+
+    public final Long getWriteCoalesceDelayMicrosOrDefault() {
+        return Optional.ofNullable(writeCoalesceDelayMicros).orElse(200L);
+    }
+
+    public final Integer getWriteCoalesceBatchOrDefault() {
+        return Optional.ofNullable(writeCoalesceBatch).orElse(256);
+    }
+
+    public final Integer getWriteCoalesceQueueOrDefault() {
+        return Optional.ofNullable(writeCoalesceQueue).orElse(10_000);
+    }
+
+    public final Integer getCompressionThresholdOrDefault() {
+        return Optional.ofNullable(compressionThreshold).orElse(4096);
+    }
+
+    public final Integer getCompressionLevelOrDefault() {
+        return Optional.ofNullable(compressionLevel).orElse(1);
+    }
+
+    public final boolean isHotKeysEnabledOrDefault() {
+        return Optional.ofNullable(hotKeysEnabled).orElse(false);
+    }
+
+    public final Integer getHotKeysSampleOrDefault() {
+        return Optional.ofNullable(hotKeysSample).orElse(16);
+    }
+
+    public final Integer getHotKeysTopOrDefault() {
+        return Optional.ofNullable(hotKeysTop).orElse(20);
+    }
+
+    public final Long getHotKeysWindowMillisOrDefault() {
+        return Optional.ofNullable(hotKeysWindowMillis).orElse(60000L);
+    }
+
+    public final Long getShutdownPropagationMillisOrDefault() {
+        return Optional.ofNullable(shutdownPropagationMillis).orElse(5000L);
+    }
+
+    public final Long getShutdownSafeTimeoutMillisOrDefault() {
+        return Optional.ofNullable(shutdownSafeTimeoutMillis).orElse(30000L);
+    }
+
     public Environment getEnvironment() {
         return environment;
     }
@@ -210,6 +832,102 @@ public class NacosDiscoveryProperties {
         this.maxSizePolicy = maxSizePolicy;
     }
 
+    public final Integer getTimeToLiveJitterPercent() {
+        return timeToLiveJitterPercent;
+    }
+
+    public final void setTimeToLiveJitterPercent(final Integer timeToLiveJitterPercent) {
+        this.timeToLiveJitterPercent = timeToLiveJitterPercent;
+    }
+
+    public final Long getLoaderLeaseWaitMillis() {
+        return loaderLeaseWaitMillis;
+    }
+
+    public final void setLoaderLeaseWaitMillis(final Long loaderLeaseWaitMillis) {
+        this.loaderLeaseWaitMillis = loaderLeaseWaitMillis;
+    }
+
+    public final Long getLoaderLeaseMillis() {
+        return loaderLeaseMillis;
+    }
+
+    public final void setLoaderLeaseMillis(final Long loaderLeaseMillis) {
+        this.loaderLeaseMillis = loaderLeaseMillis;
+    }
+
+    public final Boolean getAsyncWrite() {
+        return asyncWrite;
+    }
+
+    public final void setAsyncWrite(final Boolean asyncWrite) {
+        this.asyncWrite = asyncWrite;
+    }
+
+    public final Boolean getGenerationClear() {
+        return generationClear;
+    }
+
+    public final void setGenerationClear(final Boolean generationClear) {
+        this.generationClear = generationClear;
+    }
+
+    public final Boolean getNearCacheEnabled() {
+        return nearCacheEnabled;
+    }
+
+    public final void setNearCacheEnabled(final Boolean nearCacheEnabled) {
+        this.nearCacheEnabled = nearCacheEnabled;
+    }
+
+    public final InMemoryFormat getNearCacheInMemoryFormat() {
+        return nearCacheInMemoryFormat;
+    }
+
+    public final void setNearCacheInMemoryFormat(final InMemoryFormat nearCacheInMemoryFormat) {
+        this.nearCacheInMemoryFormat = nearCacheInMemoryFormat;
+    }
+
+    public final Integer getNearCacheSize() {
+        return nearCacheSize;
+    }
+
+    public final void setNearCacheSize(final Integer nearCacheSize) {
+        this.nearCacheSize = nearCacheSize;
+    }
+
+    public final EvictionPolicy getNearCachePolicy() {
+        return nearCachePolicy;
+    }
+
+    public final void setNearCachePolicy(final EvictionPolicy nearCachePolicy) {
+        this.nearCachePolicy = nearCachePolicy;
+    }
+
+    public final Boolean getNearCacheInvalidateOnChange() {
+        return nearCacheInvalidateOnChange;
+    }
+
+    public final void setNearCacheInvalidateOnChange(final Boolean nearCacheInvalidateOnChange) {
+        this.nearCacheInvalidateOnChange = nearCacheInvalidateOnChange;
+    }
+
+    public final Boolean getNearCachePreload() {
+        return nearCachePreload;
+    }
+
+    public final void setNearCachePreload(final Boolean nearCachePreload) {
+        this.nearCachePreload = nearCachePreload;
+    }
+
+    public final String getNearCachePreloadDirectory() {
+        return nearCachePreloadDirectory;
+    }
+
+    public final void setNearCachePreloadDirectory(final String nearCachePreloadDirectory) {
+        this.nearCachePreloadDirectory = nearCachePreloadDirectory;
+    }
+
     public final String getServerAddr() {
         return serverAddr;
     }
@@ -274,6 +992,318 @@ public class NacosDiscoveryProperties {
         this.secretKey = secretKey;
     }
 
+    public final String getZone() {
+        return zone;
+    }
+
+    public final void setZone(final String zone) {
+        this.zone = zone;
+    }
+
+    public final String getRack() {
+        return rack;
+    }
+
+    public final void setRack(final String rack) {
+        this.rack = rack;
+    }
+
+    public final String getHost() {
+        return host;
+    }
+
+    public final void setHost(final String host) {
+        this.host = host;
+    }
+
+    public final Boolean getReadBackupData() {
+        return readBackupData;
+    }
+
+    public final void setReadBackupData(final Boolean readBackupData) {
+        this.readBackupData = readBackupData;
+    }
+
+    public final DiscoveryMode getDiscoveryMode() {
+        return discoveryMode;
+    }
+
+    public final void setDiscoveryMode(final DiscoveryMode discoveryMode) {
+        this.discoveryMode = discoveryMode;
+    }
+
+    public final Long getDiscoveryRefreshMinMillis() {
+        return discoveryRefreshMinMillis;
+    }
+
+    public final void setDiscoveryRefreshMinMillis(final Long discoveryRefreshMinMillis) {
+        this.discoveryRefreshMinMillis = discoveryRefreshMinMillis;
+    }
+
+    public final Long getDiscoveryRefreshMaxMillis() {
+        return discoveryRefreshMaxMillis;
+    }
+
+    public final void setDiscoveryRefreshMaxMillis(final Long discoveryRefreshMaxMillis) {
+        this.discoveryRefreshMaxMillis = discoveryRefreshMaxMillis;
+    }
+
+    public final Integer getDiscoveryRefreshJitterPercent() {
+        return discoveryRefreshJitterPercent;
+    }
+
+    public final void setDiscoveryRefreshJitterPercent(final Integer discoveryRefreshJitterPercent) {
+        this.discoveryRefreshJitterPercent = discoveryRefreshJitterPercent;
+    }
+
+    public final Integer getDiscoveryBreakerFailures() {
+        return discoveryBreakerFailures;
+    }
+
+    public final void setDiscoveryBreakerFailures(final Integer discoveryBreakerFailures) {
+        this.discoveryBreakerFailures = discoveryBreakerFailures;
+    }
+
+    public final Long getDiscoveryBreakerOpenMillis() {
+        return discoveryBreakerOpenMillis;
+    }
+
+    public final void setDiscoveryBreakerOpenMillis(final Long discoveryBreakerOpenMillis) {
+        this.discoveryBreakerOpenMillis = discoveryBreakerOpenMillis;
+    }
+
+    public final Boolean getDiscoveryFilterEnabled() {
+        return discoveryFilterEnabled;
+    }
+
+    public final void setDiscoveryFilterEnabled(final Boolean discoveryFilterEnabled) {
+        this.discoveryFilterEnabled = discoveryFilterEnabled;
+    }
+
+    public final Integer getDiscoveryProbeTimeoutMillis() {
+        return discoveryProbeTimeoutMillis;
+    }
+
+    public final void setDiscoveryProbeTimeoutMillis(final Integer discoveryProbeTimeoutMillis) {
+        this.discoveryProbeTimeoutMillis = discoveryProbeTimeoutMillis;
+    }
+
+    public final Long getDiscoveryProbeCacheMillis() {
+        return discoveryProbeCacheMillis;
+    }
+
+    public final void setDiscoveryProbeCacheMillis(final Long discoveryProbeCacheMillis) {
+        this.discoveryProbeCacheMillis = discoveryProbeCacheMillis;
+    }
+
+    public final String getDiscoverySnapshotFile() {
+        return discoverySnapshotFile;
+    }
+
+    public final void setDiscoverySnapshotFile(final String discoverySnapshotFile) {
+        this.discoverySnapshotFile = discoverySnapshotFile;
+    }
+
+    public final Boolean getBootstrapEager() {
+        return bootstrapEager;
+    }
+
+    public final void setBootstrapEager(final Boolean bootstrapEager) {
+        this.bootstrapEager = bootstrapEager;
+    }
+
+    public final Long getBootstrapReadyTimeoutMillis() {
+        return bootstrapReadyTimeoutMillis;
+    }
+
+    public final void setBootstrapReadyTimeoutMillis(final Long bootstrapReadyTimeoutMillis) {
+        this.bootstrapReadyTimeoutMillis = bootstrapReadyTimeoutMillis;
+    }
+
+    public final Boolean getClientMode() {
+        return clientMode;
+    }
+
+    public final void setClientMode(final Boolean clientMode) {
+        this.clientMode = clientMode;
+    }
+
+    public final Boolean getL1Enabled() {
+        return l1Enabled;
+    }
+
+    public final void setL1Enabled(final Boolean l1Enabled) {
+        this.l1Enabled = l1Enabled;
+    }
+
+    public final Integer getL1Size() {
+        return l1Size;
+    }
+
+    public final void setL1Size(final Integer l1Size) {
+        this.l1Size = l1Size;
+    }
+
+    public final Long getL1TimeToLiveMillis() {
+        return l1TimeToLiveMillis;
+    }
+
+    public final void setL1TimeToLiveMillis(final Long l1TimeToLiveMillis) {
+        this.l1TimeToLiveMillis = l1TimeToLiveMillis;
+    }
+
+    public final Long getL1InvalidationDelayMillis() {
+        return l1InvalidationDelayMillis;
+    }
+
+    public final void setL1InvalidationDelayMillis(final Long l1InvalidationDelayMillis) {
+        this.l1InvalidationDelayMillis = l1InvalidationDelayMillis;
+    }
+
+    public final String getWarmRestartDirectory() {
+        return warmRestartDirectory;
+    }
+
+    public final void setWarmRestartDirectory(final String warmRestartDirectory) {
+        this.warmRestartDirectory = warmRestartDirectory;
+    }
+
+    public final Long getWarmRestartIntervalMillis() {
+        return warmRestartIntervalMillis;
+    }
+
+    public final void setWarmRestartIntervalMillis(final Long warmRestartIntervalMillis) {
+        this.warmRestartIntervalMillis = warmRestartIntervalMillis;
+    }
+
+    public final String getTuningDataId() {
+        return tuningDataId;
+    }
+
+    public final void setTuningDataId(final String tuningDataId) {
+        this.tuningDataId = tuningDataId;
+    }
+
+    public final String getTuningGroup() {
+        return tuningGroup;
+    }
+
+    public final void setTuningGroup(final String tuningGroup) {
+        this.tuningGroup = tuningGroup;
+    }
+
+    public final Boolean getWriteCoalesceEnabled() {
+        return writeCoalesceEnabled;
+    }
+
+    public final void setWriteCoalesceEnabled(final Boolean writeCoalesceEnabled) {
+        this.writeCoalesceEnabled = writeCoalesceEnabled;
+    }
+
+    public final Long getWriteCoalesceDelayMicros() {
+        return writeCoalesceDelayMicros;
+    }
+
+    public final void setWriteCoalesceDelayMicros(final Long writeCoalesceDelayMicros) {
+        this.writeCoalesceDelayMicros = writeCoalesceDelayMicros;
+    }
+
+    public final Integer getWriteCoalesceBatch() {
+        return writeCoalesceBatch;
+    }
+
+    public final void setWriteCoalesceBatch(final Integer writeCoalesceBatch) {
+        this.writeCoalesceBatch = writeCoalesceBatch;
+    }
+
+    public final Integer getWriteCoalesceQueue() {
+        return writeCoalesceQueue;
+    }
+
+    public final void setWriteCoalesceQueue(final Integer writeCoalesceQueue) {
+        this.writeCoalesceQueue = writeCoalesceQueue;
+    }
+
+    public final String getCostAwareMaps() {
+        return costAwareMaps;
+    }
+
+    public final void setCostAwareMaps(final String costAwareMaps) {
+        this.costAwareMaps = costAwareMaps;
+    }
+
+    public final String getCompressionMaps() {
+        return compressionMaps;
+    }
+
+    public final void setCompressionMaps(final String compressionMaps) {
+        this.compressionMaps = compressionMaps;
+    }
+
+    public final Integer getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public final void setCompressionThreshold(final Integer compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public final Integer getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public final void setCompressionLevel(final Integer compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public final Boolean getHotKeysEnabled() {
+        return hotKeysEnabled;
+    }
+
+    public final void setHotKeysEnabled(final Boolean hotKeysEnabled) {
+        this.hotKeysEnabled = hotKeysEnabled;
+    }
+
+    public final Integer getHotKeysSample() {
+        return hotKeysSample;
+    }
+
+    public final void setHotKeysSample(final Integer hotKeysSample) {
+        this.hotKeysSample = hotKeysSample;
+    }
+
+    public final Integer getHotKeysTop() {
+        return hotKeysTop;
+    }
+
+    public final void setHotKeysTop(final Integer hotKeysTop) {
+        this.hotKeysTop = hotKeysTop;
+    }
+
+    public final Long getHotKeysWindowMillis() {
+        return hotKeysWindowMillis;
+    }
+
+    public final void setHotKeysWindowMillis(final Long hotKeysWindowMillis) {
+        this.hotKeysWindowMillis = hotKeysWindowMillis;
+    }
+
+    public final Long getShutdownPropagationMillis() {
+        return shutdownPropagationMillis;
+    }
+
+    public final void setShutdownPropagationMillis(final Long shutdownPropagationMillis) {
+        this.shutdownPropagationMillis = shutdownPropagationMillis;
+    }
+
+    public final Long getShutdownSafeTimeoutMillis() {
+        return shutdownSafeTimeoutMillis;
+    }
+
+    public final void setShutdownSafeTimeoutMillis(final Long shutdownSafeTimeoutMillis) {
+        this.shutdownSafeTimeoutMillis = shutdownSafeTimeoutMillis;
+    }
+
 
     @Override
     public boolean equals(final Object o) {
@@ -284,17 +1314,56 @@ public class NacosDiscoveryProperties {
             return false;
         }
         final NacosDiscoveryProperties that = (NacosDiscoveryProperties) o;
-        return Objects.equals(environment, that.environment) && Objects.equals(size, that.size) && Objects.equals(
-            timeToLive, that.timeToLive) && policy == that.policy && maxSizePolicy == that.maxSizePolicy && Objects.equals(serverAddr,
-            that.serverAddr) && Objects.equals(applicationName, that.applicationName) && Objects.equals(namespace, that.namespace)
-            && Objects.equals(clusterName, that.clusterName) && Objects.equals(username, that.username) && Objects.equals(
-            password, that.password) && Objects.equals(accessKey, that.accessKey) && Objects.equals(secretKey, that.secretKey);
+        return Objects.equals(environment, that.environment) && Objects.equals(size, that.size) && Objects.equals(timeToLive, that.timeToLive)
+            && Objects.equals(timeToLiveJitterPercent, that.timeToLiveJitterPercent) && policy == that.policy
+            && maxSizePolicy == that.maxSizePolicy && Objects.equals(asyncWrite, that.asyncWrite)
+            && Objects.equals(generationClear, that.generationClear) && Objects.equals(loaderLeaseWaitMillis, that.loaderLeaseWaitMillis)
+            && Objects.equals(loaderLeaseMillis, that.loaderLeaseMillis) && Objects.equals(nearCacheEnabled, that.nearCacheEnabled)
+            && nearCacheInMemoryFormat == that.nearCacheInMemoryFormat && Objects.equals(nearCacheSize, that.nearCacheSize)
+            && nearCachePolicy == that.nearCachePolicy && Objects.equals(nearCacheInvalidateOnChange, that.nearCacheInvalidateOnChange)
+            && Objects.equals(nearCachePreload, that.nearCachePreload)
+            && Objects.equals(nearCachePreloadDirectory, that.nearCachePreloadDirectory) && Objects.equals(serverAddr, that.serverAddr)
+            && Objects.equals(applicationName, that.applicationName) && Objects.equals(namespace, that.namespace)
+            && Objects.equals(clusterName, that.clusterName) && Objects.equals(username, that.username) && Objects.equals(password, that.password)
+            && Objects.equals(accessKey, that.accessKey) && Objects.equals(secretKey, that.secretKey) && Objects.equals(zone, that.zone)
+            && Objects.equals(rack, that.rack) && Objects.equals(host, that.host) && Objects.equals(readBackupData, that.readBackupData)
+            && discoveryMode == that.discoveryMode && Objects.equals(discoveryRefreshMinMillis, that.discoveryRefreshMinMillis)
+            && Objects.equals(discoveryRefreshMaxMillis, that.discoveryRefreshMaxMillis)
+            && Objects.equals(discoveryRefreshJitterPercent, that.discoveryRefreshJitterPercent)
+            && Objects.equals(discoveryBreakerFailures, that.discoveryBreakerFailures)
+            && Objects.equals(discoveryBreakerOpenMillis, that.discoveryBreakerOpenMillis)
+            && Objects.equals(discoveryFilterEnabled, that.discoveryFilterEnabled)
+            && Objects.equals(discoveryProbeTimeoutMillis, that.discoveryProbeTimeoutMillis)
+            && Objects.equals(discoveryProbeCacheMillis, that.discoveryProbeCacheMillis)
+            && Objects.equals(discoverySnapshotFile, that.discoverySnapshotFile) && Objects.equals(bootstrapEager, that.bootstrapEager)
+            && Objects.equals(bootstrapReadyTimeoutMillis, that.bootstrapReadyTimeoutMillis) && Objects.equals(clientMode, that.clientMode)
+            && Objects.equals(l1Enabled, that.l1Enabled) && Objects.equals(l1Size, that.l1Size)
+            && Objects.equals(l1TimeToLiveMillis, that.l1TimeToLiveMillis)
+            && Objects.equals(l1InvalidationDelayMillis, that.l1InvalidationDelayMillis)
+            && Objects.equals(warmRestartDirectory, that.warmRestartDirectory)
+            && Objects.equals(warmRestartIntervalMillis, that.warmRestartIntervalMillis) && Objects.equals(tuningDataId, that.tuningDataId)
+            && Objects.equals(tuningGroup, that.tuningGroup) && Objects.equals(writeCoalesceEnabled, that.writeCoalesceEnabled)
+            && Objects.equals(writeCoalesceDelayMicros, that.writeCoalesceDelayMicros)
+            && Objects.equals(writeCoalesceBatch, that.writeCoalesceBatch) && Objects.equals(writeCoalesceQueue, that.writeCoalesceQueue)
+            && Objects.equals(costAwareMaps, that.costAwareMaps) && Objects.equals(compressionMaps, that.compressionMaps)
+            && Objects.equals(compressionThreshold, that.compressionThreshold) && Objects.equals(compressionLevel, that.compressionLevel)
+            && Objects.equals(hotKeysEnabled, that.hotKeysEnabled) && Objects.equals(hotKeysSample, that.hotKeysSample)
+            && Objects.equals(hotKeysTop, that.hotKeysTop) && Objects.equals(hotKeysWindowMillis, that.hotKeysWindowMillis)
+            && Objects.equals(shutdownPropagationMillis, that.shutdownPropagationMillis)
+            && Objects.equals(shutdownSafeTimeoutMillis, that.shutdownSafeTimeoutMillis);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(environment, size, timeToLive, policy, maxSizePolicy, serverAddr, applicationName, namespace, clusterName, username,
-            password,
-            accessKey, secretKey);
+        return Objects.hash(environment, size, timeToLive, timeToLiveJitterPercent, policy, maxSizePolicy, asyncWrite, generationClear,
+            loaderLeaseWaitMillis, loaderLeaseMillis, nearCacheEnabled, nearCacheInMemoryFormat, nearCacheSize, nearCachePolicy,
+            nearCacheInvalidateOnChange, nearCachePreload, nearCachePreloadDirectory, serverAddr, applicationName, namespace, clusterName,
+            username, password, accessKey, secretKey, zone, rack, host, readBackupData, discoveryMode, discoveryRefreshMinMillis,
+            discoveryRefreshMaxMillis, discoveryRefreshJitterPercent, discoveryBreakerFailures, discoveryBreakerOpenMillis,
+            discoveryFilterEnabled, discoveryProbeTimeoutMillis, discoveryProbeCacheMillis, discoverySnapshotFile, bootstrapEager,
+            bootstrapReadyTimeoutMillis, clientMode, l1Enabled, l1Size, l1TimeToLiveMillis, l1InvalidationDelayMillis, warmRestartDirectory,
+            warmRestartIntervalMillis, tuningDataId, tuningGroup, writeCoalesceEnabled, writeCoalesceDelayMicros, writeCoalesceBatch,
+            writeCoalesceQueue, costAwareMaps, compressionMaps, compressionThreshold, compressionLevel, hotKeysEnabled, hotKeysSample,
+            hotKeysTop, hotKeysWindowMillis, shutdownPropagationMillis, shutdownSafeTimeoutMillis);
     }
 }
@@ -15,25 +15,35 @@
 
 package red.ponder.hazelcast.nacos;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 
-import com.alibaba.nacos.api.PropertyKeyConst;
 import com.alibaba.nacos.api.exception.NacosException;
-import com.alibaba.nacos.api.naming.NamingFactory;
 import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.EventListener;
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
 import com.alibaba.nacos.api.naming.pojo.Instance;
-import com.alibaba.nacos.client.naming.utils.InitUtils;
 import com.hazelcast.cluster.Address;
 import com.hazelcast.logging.ILogger;
 import com.hazelcast.spi.discovery.AbstractDiscoveryStrategy;
 import com.hazelcast.spi.discovery.DiscoveryNode;
 import com.hazelcast.spi.discovery.SimpleDiscoveryNode;
 
-import red.ponder.hazelcast.utils.SpringUtil;
+import red.ponder.hazelcast.metrics.DiscoveryMetrics;
 
 /**
  * Implementation for Nacos Discovery Strategy
@@ -41,6 +51,14 @@ import red.ponder.hazelcast.utils.SpringUtil;
  * @author Ponder
  */
 public class NacosDiscoveryStrategy extends AbstractDiscoveryStrategy {
+    private static final Comparator<DiscoveryNode> ADDRESS_ORDER = Comparator
+        .comparing((DiscoveryNode node) -> node.getPrivateAddress().getHost())
+        .thenComparingInt(node -> node.getPrivateAddress().getPort());
+
+    private static final long MIN_RECONCILE_DELAY_MILLIS = 500;
+
+    private static final long MAX_RECONCILE_DELAY_MILLIS = 30_000;
+
     private final DiscoveryNode thisNode;
 
     private final ILogger logger;
@@ -49,10 +67,39 @@ public class NacosDiscoveryStrategy extends AbstractDiscoveryStrategy {
 
     private List<String> clusters = new ArrayList<>();
 
-    private NamingService namingService;
+    private volatile NamingService namingService;
+
+    /**
+     * 成员注册用的NamingService, 本服务在JVM内的第一个成员与namingService是同一个共享客户端; 使用调用方提供的NamingService时为null
+     */
+    private volatile NamingService registration;
 
     private Instance instance;
 
+    /**
+     * SUBSCRIBE模式下由Nacos推送线程整体替换, discoverNodes无锁读取
+     */
+    private final AtomicReference<DiscoverySnapshot> snapshot = new AtomicReference<>(DiscoverySnapshot.EMPTY);
+
+    private volatile EventListener subscriber;
+
+    private MemberSnapshotStore store;
+
+    /**
+     * 后台补连Nacos以及ADAPTIVE模式定时拉取共用的单线程调度器, 按需创建
+     */
+    private ScheduledExecutorService scheduler;
+
+    private DiscoveryFilter discoveryFilter;
+
+    private volatile AdaptiveRefresher refresher;
+
+    private DiscoveryMetrics metrics;
+
+    private final AtomicBoolean deregistered = new AtomicBoolean();
+
+    private final BooleanSupplier departure = this::deregister;
+
     public NacosDiscoveryStrategy(final DiscoveryNode discoveryNode, final ILogger logger, final Map<String, Comparable> properties,
                                   final NacosDiscoveryProperties nacosDiscoveryProperties) {
         super(logger, properties);
@@ -61,14 +108,57 @@ public class NacosDiscoveryStrategy extends AbstractDiscoveryStrategy {
         this.nacosDiscoveryProperties = nacosDiscoveryProperties;
     }
 
+    /**
+     * 使用调用方提供的NamingService, 不经过连接池
+     */
+    NacosDiscoveryStrategy(final DiscoveryNode discoveryNode, final ILogger logger, final Map<String, Comparable> properties,
+                           final NacosDiscoveryProperties nacosDiscoveryProperties, final NamingService namingService) {
+        this(discoveryNode, logger, properties, nacosDiscoveryProperties);
+        this.namingService = namingService;
+    }
+
     private boolean isMember() {
         return thisNode != null;
     }
 
     @Override
     public void start() {
+        final long startNanos = System.nanoTime();
+        metrics = DiscoveryMetrics.of(nacosDiscoveryProperties.getApplicationnameOrDefault());
+        if (isMember()) {
+            MemberReadiness.of(nacosDiscoveryProperties.getApplicationnameOrDefault()).thenRun(() -> metrics.recordJoined(startNanos));
+            MemberDeparture.register(nacosDiscoveryProperties.getApplicationnameOrDefault(), departure);
+        }
+        clusters.add(nacosDiscoveryProperties.getClusterNameOrDefault());
+        if (nacosDiscoveryProperties.isDiscoveryFilterEnabledOrDefault()) {
+            discoveryFilter = new DiscoveryFilter(nacosDiscoveryProperties, isMember() ? thisNode.getPrivateAddress() : null);
+        }
+        final List<DiscoveryNode> lastKnown = loadLastKnownMembers();
+        if (lastKnown.isEmpty()) {
+            connect();
+            return;
+        }
+        //serve members from the local snapshot first and talk to nacos in the background
+        snapshot.set(DiscoverySnapshot.EMPTY.next(lastKnown));
+        scheduler().execute(() -> reconcile(MIN_RECONCILE_DELAY_MILLIS));
+    }
+
+    private synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "hazelcast-nacos-discovery");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    private void connect() {
         try {
-            startCuratorClient();
+            if (namingService == null) {
+                startCuratorClient();
+            }
         } catch (NacosException e) {
             logger.severe("服务启动失败", e);
         }
@@ -79,27 +169,129 @@ public class NacosDiscoveryStrategy extends AbstractDiscoveryStrategy {
                 //register members only into nacos
                 //there no need to register clients
                 prepareServiceInstance();
-                namingService.registerInstance(nacosDiscoveryProperties.getApplicationnameOrDefault(), instance);
+                if (nacosDiscoveryProperties.isBootstrapEagerOrDefault()) {
+                    registerWhenReady();
+                } else {
+                    register(registrationService());
+                }
+            }
+            final DiscoveryMode mode = nacosDiscoveryProperties.getDiscoveryModeOrDefault();
+            if (mode == DiscoveryMode.SUBSCRIBE) {
+                subscribe();
+            } else if (mode == DiscoveryMode.ADAPTIVE) {
+                poll();
+                refresher = new AdaptiveRefresher(nacosDiscoveryProperties, scheduler(), this::poll, logger);
+                refresher.start();
             }
         } catch (Exception e) {
             throw new IllegalStateException("Error while talking to Nacos. ", e);
         }
     }
 
+    /**
+     * 成员入群完成后才注册, 避免其他节点发现一个还在启动中的成员
+     * 启动方一直没有通知就绪时, 超时后照常注册
+     * nacos中还没有任何成员时立即注册: 同时冷启动的成员必须能互相发现, 否则各自组成单独的集群
+     */
+    private void registerWhenReady() throws NacosException {
+        final String serviceName = nacosDiscoveryProperties.getApplicationnameOrDefault();
+        if (!hasRegisteredMembers()) {
+            register(registrationService());
+            logger.info("No member registered in Nacos yet, registered before joining");
+            return;
+        }
+        final AtomicBoolean registered = new AtomicBoolean();
+        final long startNanos = System.nanoTime();
+        final Runnable register = () -> {
+            final NamingService current = registrationService();
+            if (current == null || !registered.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                register(current);
+                logger.info(String.format("Registered in Nacos %d ms after discovery start",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+            } catch (Exception e) {
+                logger.severe("Cannot register member in Nacos", e);
+            }
+        };
+        MemberReadiness.of(serviceName).thenRun(register);
+        scheduler().schedule(register, nacosDiscoveryProperties.getBootstrapReadyTimeoutMillisOrDefault(), TimeUnit.MILLISECONDS);
+    }
+
+    private boolean hasRegisteredMembers() {
+        try {
+            return !filter(queryInstances(false)).isEmpty();
+        } catch (NacosException | RuntimeException e) {
+            //cannot tell, prefer a discoverable member over a split cluster
+            logger.warning("Cannot query registered members, register before joining", e);
+            return false;
+        }
+    }
+
+    private void register(final NamingService current) throws NacosException {
+        final long startNanos = System.nanoTime();
+        try {
+            current.registerInstance(nacosDiscoveryProperties.getApplicationnameOrDefault(), instance);
+        } catch (NacosException | RuntimeException e) {
+            metrics.recordFailure();
+            throw e;
+        } finally {
+            metrics.register().recordSince(startNanos);
+        }
+    }
+
+    private void reconcile(final long delayMillis) {
+        try {
+            connect();
+            logger.info("Reconciled with Nacos after starting from " + store.getFile());
+        } catch (Exception e) {
+            if (scheduler.isShutdown()) {
+                return;
+            }
+            final long nextDelay = Math.min(delayMillis * 2, MAX_RECONCILE_DELAY_MILLIS);
+            logger.warning("Nacos is not reachable yet, retry in " + delayMillis + " ms", e);
+            scheduler.schedule(() -> reconcile(nextDelay), delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private List<DiscoveryNode> loadLastKnownMembers() {
+        final String file = nacosDiscoveryProperties.getDiscoverySnapshotFile();
+        if (file == null || file.isEmpty()) {
+            return Collections.emptyList();
+        }
+        store = new MemberSnapshotStore(Paths.get(file));
+        try {
+            final List<DiscoveryNode> nodes = store.load();
+            nodes.sort(ADDRESS_ORDER);
+            logger.info(String.format("Loaded %d last known members from %s", nodes.size(), file));
+            return nodes;
+        } catch (IOException e) {
+            logger.warning("Cannot read member snapshot " + file, e);
+            return Collections.emptyList();
+        }
+    }
+
     private void prepareServiceInstance() {
         final Address privateAddress = thisNode.getPrivateAddress();
         instance.setIp(privateAddress.getHost());
         instance.setPort(privateAddress.getPort());
         instance.setClusterName(nacosDiscoveryProperties.getClusterNameOrDefault());
-        final Map<String, String> instanceMeta = new HashMap<>(1);
+        final Map<String, String> instanceMeta = new HashMap<>(nacosDiscoveryProperties.getPartitionGroupMetadata());
         instanceMeta.put("cluster", nacosDiscoveryProperties.getClusterNameOrDefault());
         instance.setMetadata(instanceMeta);
     }
 
-    private void startCuratorClient() throws NacosException {
-        final NacosDiscoveryProperties discoveryProperties = SpringUtil.getBean(NacosDiscoveryProperties.class);
+    /**
+     * 可用区/机架/主机作为成员属性, 供ZONE_AWARE分区分组使用
+     */
+    @Override
+    public Map<String, String> discoverLocalMetadata() {
+        return nacosDiscoveryProperties.getPartitionGroupMetadata();
+    }
 
-        clusters.add(discoveryProperties.getClusterNameOrDefault());
+    private void startCuratorClient() throws NacosException {
+        final NacosDiscoveryProperties discoveryProperties = nacosDiscoveryProperties;
 
         if (discoveryProperties.getServerAddrOrDefault() == null) {
             throw new IllegalStateException("Nacos ServerAddr cannot be null.");
@@ -107,42 +299,211 @@ public class NacosDiscoveryStrategy extends AbstractDiscoveryStrategy {
         logger.finest(String.format("Using %s as Nacos URL, namespace is %s", discoveryProperties.getServerAddrOrDefault(),
             discoveryProperties.getNamespaceOrDefault()));
 
-        final Properties properties = new Properties();
-        properties.setProperty(PropertyKeyConst.SERVER_ADDR, discoveryProperties.getServerAddrOrDefault());
-        properties.setProperty(PropertyKeyConst.NAMESPACE, discoveryProperties.getNamespaceOrDefault());
-        properties.setProperty(PropertyKeyConst.USERNAME, discoveryProperties.getUsernameOrDefault());
-        properties.setProperty(PropertyKeyConst.PASSWORD, discoveryProperties.getPasswordOrDefault());
-        properties.setProperty(PropertyKeyConst.ACCESS_KEY, discoveryProperties.getAccessKeyOrDefault());
-        properties.setProperty(PropertyKeyConst.SECRET_KEY, discoveryProperties.getSecretKeyOrDefault());
+        namingService = NamingServicePool.acquire(discoveryProperties.getNacosClientProperties());
+        if (isMember()) {
+            registration = NamingServicePool.acquireRegistration(discoveryProperties.getNacosClientProperties(),
+                discoveryProperties.getApplicationnameOrDefault());
+        }
+    }
 
-        InitUtils.initEndpoint(properties);
+    private NamingService registrationService() {
+        final NamingService current = registration;
+        return current != null ? current : namingService;
+    }
 
-        namingService = NamingFactory.createNamingService(properties);
+    /**
+     * 先全量拉取一次作为初始快照, 之后由订阅推送更新
+     */
+    private void subscribe() throws NacosException {
+        final String serviceName = nacosDiscoveryProperties.getApplicationnameOrDefault();
+        subscriber = event -> {
+            if (event instanceof NamingEvent) {
+                refresh(((NamingEvent) event).getInstances());
+            }
+        };
+        final long startNanos = System.nanoTime();
+        final List<Instance> initial;
+        try {
+            initial = namingService.selectInstances(serviceName, clusters, true, false);
+        } catch (NacosException | RuntimeException e) {
+            metrics.recordFailure();
+            throw e;
+        } finally {
+            metrics.query().recordSince(startNanos);
+        }
+        refresh(initial);
+        namingService.subscribe(serviceName, clusters, subscriber);
     }
 
-    @Override
-    public Iterable<DiscoveryNode> discoverNodes() {
+    private void refresh(final List<Instance> pushed) {
         try {
-            final List<Instance> members = namingService.getAllInstances(nacosDiscoveryProperties.getApplicationnameOrDefault(), clusters, true);
+            final List<Instance> members = filter(pushed);
             final List<DiscoveryNode> nodes = new ArrayList<>(members.size());
             for (Instance member : members) {
-                Address address = new Address(member.getIp(), member.getPort());
-                nodes.add(new SimpleDiscoveryNode(address));
+                if (member.isHealthy() && member.isEnabled()) {
+                    nodes.add(new SimpleDiscoveryNode(new Address(member.getIp(), member.getPort()), member.getMetadata()));
+                }
             }
+            remember(nodes);
+        } catch (Exception e) {
+            logger.warning("Ignore invalid Nacos instance push", e);
+        }
+    }
+
+    /**
+     * ADAPTIVE模式下拉取一次成员, 返回快照是否发生变化
+     */
+    private boolean poll() throws NacosException {
+        final long version = snapshot.get().getVersion();
+        remember(toNodes(filter(queryInstances(true))));
+        return snapshot.get().getVersion() != version;
+    }
+
+    /**
+     * @param fromServer ADAPTIVE模式的轮询直接查询服务端的健康实例, 不订阅(订阅后nacos客户端从本地缓存应答, 轮询就失去了意义);
+     *                   其他情况订阅后由本地缓存应答, Hazelcast每一轮发现不会都变成一次同步RPC
+     */
+    private List<Instance> queryInstances(final boolean fromServer) throws NacosException {
+        final String serviceName = nacosDiscoveryProperties.getApplicationnameOrDefault();
+        final long startNanos = System.nanoTime();
+        try {
+            return fromServer
+                ? namingService.selectInstances(serviceName, clusters, true, false)
+                : namingService.getAllInstances(serviceName, clusters, true);
+        } catch (NacosException | RuntimeException e) {
+            metrics.recordFailure();
+            throw e;
+        } finally {
+            metrics.query().recordSince(startNanos);
+        }
+    }
+
+    private static List<DiscoveryNode> toNodes(final List<Instance> members) {
+        final List<DiscoveryNode> nodes = new ArrayList<>(members.size());
+        for (Instance member : members) {
+            nodes.add(new SimpleDiscoveryNode(new Address(member.getIp(), member.getPort()), member.getMetadata()));
+        }
+        return nodes;
+    }
+
+    private List<Instance> filter(final List<Instance> members) {
+        return discoveryFilter == null ? members : discoveryFilter.filter(members);
+    }
+
+    /**
+     * 更新内存快照, 成员变化时同步写入磁盘快照
+     */
+    private void remember(final List<DiscoveryNode> nodes) {
+        nodes.sort(ADDRESS_ORDER);
+        final DiscoverySnapshot previous = snapshot.get();
+        final DiscoverySnapshot updated = snapshot.updateAndGet(current -> current.next(nodes));
+        metrics.recordDiscovered(nodes.size());
+        if (updated == previous) {
+            return;
+        }
+        recordChurn(previous.getNodes(), updated.getNodes());
+        logger.finest(String.format("Discovery snapshot version %d with %d members", updated.getVersion(), updated.getNodes().size()));
+        if (store != null && !nodes.isEmpty()) {
+            try {
+                store.save(updated.getNodes());
+            } catch (IOException e) {
+                logger.warning("Cannot write member snapshot " + store.getFile(), e);
+            }
+        }
+    }
+
+    private void recordChurn(final List<DiscoveryNode> before, final List<DiscoveryNode> after) {
+        final Set<Address> previous = new HashSet<>();
+        for (DiscoveryNode node : before) {
+            previous.add(node.getPrivateAddress());
+        }
+        int joined = 0;
+        for (DiscoveryNode node : after) {
+            if (!previous.remove(node.getPrivateAddress())) {
+                joined++;
+            }
+        }
+        metrics.recordChurn(joined, previous.size());
+    }
+
+    @Override
+    public Iterable<DiscoveryNode> discoverNodes() {
+        if (subscriber != null) {
+            return snapshot.get().getNodes();
+        }
+        final AdaptiveRefresher adaptive = refresher;
+        if (adaptive != null) {
+            adaptive.recordServed();
+            return snapshot.get().getNodes();
+        }
+        try {
+            final List<DiscoveryNode> nodes = toNodes(filter(queryInstances(false)));
+            remember(nodes);
             return nodes;
         } catch (Exception e) {
-            throw new IllegalStateException("Error while talking to Nacos", e);
+            final List<DiscoveryNode> lastKnown = snapshot.get().getNodes();
+            if (lastKnown.isEmpty()) {
+                throw new IllegalStateException("Error while talking to Nacos", e);
+            }
+            logger.warning("Error while talking to Nacos, using last known members", e);
+            return lastKnown;
         }
     }
 
+    /**
+     * 只注销一次, Nacos不可达时只记录日志, 实例随心跳过期从Nacos中消失
+     */
+    private boolean deregister() {
+        final NamingService current = registrationService();
+        if (!isMember() || current == null || instance == null || !deregistered.compareAndSet(false, true)) {
+            return false;
+        }
+        final long startNanos = System.nanoTime();
+        try {
+            current.deregisterInstance(nacosDiscoveryProperties.getApplicationnameOrDefault(), instance);
+            return true;
+        } catch (NacosException | RuntimeException e) {
+            metrics.recordFailure();
+            logger.warning("Cannot deregister member from Nacos, it expires with its heartbeat", e);
+            return false;
+        } finally {
+            metrics.deregister().recordSince(startNanos);
+        }
+    }
+
+    /**
+     * Nacos不可达时不抛异常, 不影响Hazelcast完成停机
+     */
     @Override
     public void destroy() {
+        MemberDeparture.unregister(nacosDiscoveryProperties.getApplicationnameOrDefault(), departure);
+        if (refresher != null) {
+            refresher.stop();
+            logger.info("Adaptive discovery stopped, " + refresher);
+        }
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+        }
         try {
-            if (isMember() && namingService != null) {
-                namingService.deregisterInstance(nacosDiscoveryProperties.getApplicationnameOrDefault(), instance);
+            if (subscriber != null && namingService != null) {
+                namingService.unsubscribe(nacosDiscoveryProperties.getApplicationnameOrDefault(), clusters, subscriber);
+            }
+        } catch (NacosException | RuntimeException e) {
+            logger.warning("Cannot unsubscribe from Nacos", e);
+        }
+        try {
+            deregister();
+        } finally {
+            if (registration != null) {
+                NamingServicePool.releaseRegistration(registration, nacosDiscoveryProperties.getApplicationnameOrDefault());
+                registration = null;
+            }
+            if (namingService != null) {
+                NamingServicePool.release(namingService);
+                namingService = null;
             }
-        } catch (Exception e) {
-            throw new IllegalStateException("Error while talking to Nacos", e);
         }
     }
 }
@@ -0,0 +1,130 @@
+package red.ponder.hazelcast.nacos;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.nacos.api.exception.NacosException;
+import com.alibaba.nacos.api.naming.NamingFactory;
+import com.alibaba.nacos.api.naming.NamingService;
+
+/**
+ * 按连接参数共享NamingService, 引用计数归零时关闭
+ * 同一JVM内多个Hazelcast实例/发现策略只持有一套gRPC连接和心跳线程
+ * Nacos 2.x每个客户端对每个服务只保留一个注册实例, 同一服务的多个成员共用时后注册的会覆盖前一个, 任一成员注销会把其他成员一起注销,
+ * 所以每个服务的第一个成员通过共享的NamingService注册, 同一JVM内同一服务的其他成员才使用独占的NamingService
+ *
+ * @author ponder
+ */
+public final class NamingServicePool {
+    private static final Logger log = LoggerFactory.getLogger(NamingServicePool.class);
+
+    private static final Map<String, PooledNamingService> POOL = new HashMap<>();
+
+    private static final Map<NamingService, String> KEYS = new IdentityHashMap<>();
+
+    private static final Set<NamingService> EXCLUSIVE = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private NamingServicePool() {
+    }
+
+    /**
+     * 获取连接参数对应的NamingService, 使用完必须调用{@link #release(NamingService)}
+     */
+    public static NamingService acquire(final Properties properties) throws NacosException {
+        final String key = new TreeMap<>(properties).toString();
+        synchronized (POOL) {
+            PooledNamingService pooled = POOL.get(key);
+            if (pooled == null) {
+                pooled = new PooledNamingService(NamingFactory.createNamingService(properties));
+                POOL.put(key, pooled);
+                KEYS.put(pooled.namingService, key);
+            }
+            pooled.references++;
+            return pooled.namingService;
+        }
+    }
+
+    /**
+     * 获取用于注册serviceName实例的NamingService, 共享的客户端还没有注册这个服务时直接使用它, 否则创建独占的
+     * 使用完调用{@link #releaseRegistration(NamingService, String)}
+     */
+    public static NamingService acquireRegistration(final Properties properties, final String serviceName) throws NacosException {
+        synchronized (POOL) {
+            final NamingService shared = acquire(properties);
+            final PooledNamingService pooled = POOL.get(KEYS.get(shared));
+            if (pooled.registrants.add(serviceName)) {
+                return shared;
+            }
+            //still referenced by the caller's own acquire, never the last reference here
+            pooled.references--;
+        }
+        return acquireExclusive(properties);
+    }
+
+    public static void releaseRegistration(final NamingService namingService, final String serviceName) {
+        synchronized (POOL) {
+            final String key = KEYS.get(namingService);
+            if (key != null) {
+                POOL.get(key).registrants.remove(serviceName);
+            }
+        }
+        release(namingService);
+    }
+
+    private static NamingService acquireExclusive(final Properties properties) throws NacosException {
+        final NamingService namingService = NamingFactory.createNamingService(properties);
+        synchronized (POOL) {
+            EXCLUSIVE.add(namingService);
+        }
+        return namingService;
+    }
+
+    /**
+     * 释放引用, 最后一个使用者释放时关闭NamingService, 独占的直接关闭
+     */
+    public static void release(final NamingService namingService) {
+        synchronized (POOL) {
+            if (!EXCLUSIVE.remove(namingService)) {
+                final String key = KEYS.get(namingService);
+                if (key == null) {
+                    return;
+                }
+                final PooledNamingService pooled = POOL.get(key);
+                if (--pooled.references > 0) {
+                    return;
+                }
+                POOL.remove(key);
+                KEYS.remove(namingService);
+            }
+        }
+        try {
+            namingService.shutDown();
+        } catch (NacosException e) {
+            log.warn("关闭NamingService异常", e);
+        }
+    }
+
+    private static final class PooledNamingService {
+        private final NamingService namingService;
+
+        private int references;
+
+        /**
+         * 通过这个客户端注册实例的服务
+         */
+        private final Set<String> registrants = new HashSet<>();
+
+        private PooledNamingService(final NamingService namingService) {
+            this.namingService = namingService;
+        }
+    }
+}
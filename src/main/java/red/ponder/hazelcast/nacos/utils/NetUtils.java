@@ -7,7 +7,16 @@ import java.net.NetworkInterface;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +36,20 @@ public final class NetUtils {
 
     private static final InetAddress ANY_IPV6_ADDRESS = getAddress("::");
 
+    private static final String LOCAL_HOST = "127.0.0.1";
+
+    private static final int DEFAULT_PROBE_TIMEOUT_MILLIS = 3000;
+
+    private static final int PROBE_BATCH_SIZE = 64;
+
+    private static final int MAX_PORT = 65535;
+
+    private static final byte PORT_UNKNOWN = 0;
+
+    private static final byte PORT_USED = 1;
+
+    private static final byte PORT_UNUSED = 2;
+
     private NetUtils() {
     }
 
@@ -103,26 +126,116 @@ public final class NetUtils {
      * 获得可用的地址
      */
     public static InetAddress getAvailableAddress(final InetSocketAddress targetAddress, final int timeoutMillis) throws IOException {
-        try (final Socket socket = new Socket()) {
-            socket.connect(targetAddress, timeoutMillis);
-            return socket.getLocalAddress();
+        return getAvailableAddress(Collections.singletonList(targetAddress), timeoutMillis);
+    }
+
+    /**
+     * 同时连接多个目标, 返回最先连通的那条连接所使用的本机地址
+     */
+    public static InetAddress getAvailableAddress(final Collection<InetSocketAddress> targetAddresses, final int timeoutMillis)
+        throws IOException {
+        final List<SocketChannel> channels = new ArrayList<>(targetAddresses.size());
+        try (Selector selector = Selector.open()) {
+            for (InetSocketAddress target : targetAddresses) {
+                final SocketChannel channel = SocketChannel.open();
+                channels.add(channel);
+                channel.configureBlocking(false);
+                try {
+                    if (channel.connect(target)) {
+                        return ((InetSocketAddress) channel.getLocalAddress()).getAddress();
+                    }
+                    channel.register(selector, SelectionKey.OP_CONNECT);
+                } catch (IOException e) {
+                    log.debug("连接{}失败", target, e);
+                }
+            }
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (!selector.keys().isEmpty()) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    break;
+                }
+                selector.select(remaining);
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    final SelectionKey key = it.next();
+                    it.remove();
+                    final SocketChannel channel = (SocketChannel) key.channel();
+                    key.cancel();
+                    if (finishConnect(channel)) {
+                        return ((InetSocketAddress) channel.getLocalAddress()).getAddress();
+                    }
+                }
+                selector.selectNow();
+            }
+        } finally {
+            closeAll(channels);
         }
+        throw new IOException("None of " + targetAddresses + " is reachable in " + timeoutMillis + " ms");
+    }
+
+    /**
+     * 在同一个Selector上并发连接所有目标, 返回每个目标在timeoutMillis内是否可连通
+     */
+    public static boolean[] probeReachable(final List<InetSocketAddress> targetAddresses, final int timeoutMillis) {
+        final int count = targetAddresses.size();
+        final byte[] states = new byte[count];
+        final List<SocketChannel> channels = new ArrayList<>(count);
+        try (Selector selector = Selector.open()) {
+            int pending = 0;
+            for (int i = 0; i < count; i++) {
+                states[i] = probe(selector, channels, targetAddresses.get(i), i);
+                if (states[i] == PORT_UNKNOWN) {
+                    pending++;
+                }
+            }
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (pending > 0) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    break;
+                }
+                selector.select(remaining);
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    final SelectionKey key = it.next();
+                    it.remove();
+                    key.cancel();
+                    states[(Integer) key.attachment()] = finishConnect((SocketChannel) key.channel()) ? PORT_USED : PORT_UNUSED;
+                    pending--;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot probe " + targetAddresses, e);
+        } finally {
+            closeAll(channels);
+        }
+        final boolean[] reachable = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            reachable[i] = states[i] == PORT_USED;
+        }
+        return reachable;
     }
 
     /**
      * 测试本机端口是否被使用
      */
     public static boolean isLocalPortUsing(final int port) {
-        return isPortUsing("127.0.0.1", port);
+        return isPortUsing(LOCAL_HOST, port);
     }
 
     /**
      * 测试主机Host的port端口是否被使用
      */
     public static boolean isPortUsing(final String host, final int port) {
+        return isPortUsing(host, port, DEFAULT_PROBE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * 测试主机Host的port端口是否被使用
+     */
+    public static boolean isPortUsing(final String host, final int port, final int timeoutMillis) {
         boolean flag = false;
         try (final Socket socket = new Socket()) {
-            socket.connect(new InetSocketAddress(host, port), 3000);
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
             flag = true;
         } catch (IOException e) {
             log.debug("获取端口异常", e);
@@ -134,15 +247,108 @@ public final class NetUtils {
      * 获得可用的端口
      */
     public static int getAvailablePort(final Integer startPort, final String portStr) {
+        return getAvailablePort(startPort, portStr, DEFAULT_PROBE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * 获得可用的端口, 每次并发探测一批端口, 每个端口最多等待timeoutMillis
+     */
+    public static int getAvailablePort(final Integer startPort, final String portStr, final int timeoutMillis) {
         int port = startPort;
         if (!StringUtils.isEmpty(portStr)) {
             port = Integer.parseInt(portStr);
         }
-        while (true) {
-            if (!NetUtils.isLocalPortUsing(port)) {
-                return port;
+        while (port <= MAX_PORT) {
+            final int count = Math.min(PROBE_BATCH_SIZE, MAX_PORT - port + 1);
+            final int available = findUnusedPort(LOCAL_HOST, port, count, timeoutMillis);
+            if (available > 0) {
+                return available;
+            }
+            port += count;
+        }
+        throw new IllegalStateException("No available port from " + startPort);
+    }
+
+    /**
+     * 在同一个Selector上对[fromPort, fromPort + count)发起非阻塞连接
+     * 连接被拒绝即未被使用, 与isPortUsing一致, 超时也视为未被使用
+     * 一旦某个端口未被使用且比它小的端口都已确认被占用就立即返回
+     *
+     * @return 第一个未被使用的端口, 全部被占用时返回-1
+     */
+    static int findUnusedPort(final String host, final int fromPort, final int count, final int timeoutMillis) {
+        final byte[] states = new byte[count];
+        final List<SocketChannel> channels = new ArrayList<>(count);
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < count; i++) {
+                states[i] = probe(selector, channels, new InetSocketAddress(host, fromPort + i), i);
+            }
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            int lowest = firstUndecided(states, 0);
+            while (lowest < count && states[lowest] == PORT_UNKNOWN) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return fromPort + lowest;
+                }
+                selector.select(remaining);
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    final SelectionKey key = it.next();
+                    it.remove();
+                    key.cancel();
+                    states[(Integer) key.attachment()] = finishConnect((SocketChannel) key.channel()) ? PORT_USED : PORT_UNUSED;
+                }
+                lowest = firstUndecided(states, lowest);
+            }
+            return lowest < count ? fromPort + lowest : -1;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot probe ports from " + fromPort, e);
+        } finally {
+            closeAll(channels);
+        }
+    }
+
+    private static byte probe(final Selector selector, final List<SocketChannel> channels, final InetSocketAddress target,
+                              final int index) throws IOException {
+        final SocketChannel channel = SocketChannel.open();
+        channels.add(channel);
+        channel.configureBlocking(false);
+        try {
+            if (channel.connect(target)) {
+                return PORT_USED;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT, index);
+            return PORT_UNKNOWN;
+        } catch (IOException e) {
+            return PORT_UNUSED;
+        }
+    }
+
+    /**
+     * 跳过已确认被占用的端口
+     */
+    private static int firstUndecided(final byte[] states, final int from) {
+        int index = from;
+        while (index < states.length && states[index] == PORT_USED) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean finishConnect(final SocketChannel channel) {
+        try {
+            return channel.finishConnect();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void closeAll(final List<SocketChannel> channels) {
+        for (SocketChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("关闭连接异常", e);
             }
-            port++;
         }
     }
 